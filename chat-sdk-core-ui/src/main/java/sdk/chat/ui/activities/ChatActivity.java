@@ -285,9 +285,8 @@ public class ChatActivity extends BaseActivity implements TextInputDelegate, Cha
             Debug.startMethodTracing("chat");
         }
 
-        dm.add(ChatSDK.events().sourceOnMain()
-                .filter(NetworkEvent.filterType(EventType.ThreadDetailsUpdated, EventType.ThreadUsersUpdated))
-                .filter(NetworkEvent.filterThreadEntityID(thread.getEntityID()))
+        dm.add(ChatSDK.events().forThread(thread.getEntityID(), EventType.ThreadDetailsUpdated, EventType.ThreadUsersUpdated)
+                .observeOn(RX.main())
                 .subscribe(networkEvent -> chatActionBar.reload(thread)));
 
         dm.add(ChatSDK.events().sourceOnMain()
@@ -299,9 +298,8 @@ public class ChatActivity extends BaseActivity implements TextInputDelegate, Cha
                     chatActionBar.reload(thread);
                 }));
 
-        dm.add(ChatSDK.events().sourceOnMain()
-                .filter(NetworkEvent.filterType(EventType.TypingStateUpdated))
-                .filter(NetworkEvent.filterThreadEntityID(thread.getEntityID()))
+        dm.add(ChatSDK.events().forThread(thread.getEntityID(), EventType.TypingStateUpdated)
+                .observeOn(RX.main())
                 .subscribe(networkEvent -> {
                     String typingText = networkEvent.getText();
                     if (typingText != null) {
@@ -311,9 +309,8 @@ public class ChatActivity extends BaseActivity implements TextInputDelegate, Cha
                     chatActionBar.setSubtitleText(thread, typingText);
                 }));
 
-        dm.add(ChatSDK.events().sourceOnMain()
-                .filter(NetworkEvent.filterType(EventType.ThreadUserRoleUpdated))
-                .filter(NetworkEvent.filterThreadEntityID(thread.getEntityID()))
+        dm.add(ChatSDK.events().forThread(thread.getEntityID(), EventType.ThreadUserRoleUpdated)
+                .observeOn(RX.main())
                 .filter(NetworkEvent.filterUserEntityID(ChatSDK.currentUserID()))
                 .subscribe(networkEvent -> {
                     if (hasVoice(networkEvent.getUser())) {
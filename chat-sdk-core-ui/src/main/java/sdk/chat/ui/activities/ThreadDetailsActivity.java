@@ -30,7 +30,6 @@ import de.hdodenhof.circleimageview.CircleImageView;
 import sdk.chat.core.dao.Keys;
 import sdk.chat.core.dao.Thread;
 import sdk.chat.core.events.EventType;
-import sdk.chat.core.events.NetworkEvent;
 import sdk.chat.core.interfaces.ThreadType;
 import sdk.chat.core.session.ChatSDK;
 import sdk.chat.core.utils.Dimen;
@@ -41,6 +40,7 @@ import sdk.chat.ui.R2;
 import sdk.chat.ui.fragments.ThreadUsersFragment;
 import sdk.chat.ui.utils.ThreadImageBuilder;
 import sdk.chat.ui.utils.ToastHelper;
+import sdk.guru.common.RX;
 
 /**
  * Created by Ben Smiley on 24/11/14.
@@ -95,9 +95,8 @@ public class ThreadDetailsActivity extends ImagePreviewActivity {
     protected void initViews() {
         super.initViews();
 
-        dm.add(ChatSDK.events().sourceOnMain()
-                .filter(NetworkEvent.filterType(EventType.ThreadDetailsUpdated, EventType.ThreadUsersUpdated, EventType.ThreadUserRoleUpdated))
-                .filter(NetworkEvent.filterThreadEntityID(thread.getEntityID()))
+        dm.add(ChatSDK.events().forThread(thread.getEntityID(), EventType.ThreadDetailsUpdated, EventType.ThreadUsersUpdated, EventType.ThreadUserRoleUpdated)
+                .observeOn(RX.main())
                 .subscribe(networkEvent -> reloadData(), this));
 
         reloadData();
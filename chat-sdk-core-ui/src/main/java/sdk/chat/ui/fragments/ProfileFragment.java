@@ -30,7 +30,6 @@ import de.hdodenhof.circleimageview.CircleImageView;
 import sdk.chat.core.dao.Keys;
 import sdk.chat.core.dao.User;
 import sdk.chat.core.events.EventType;
-import sdk.chat.core.events.NetworkEvent;
 import sdk.chat.core.session.ChatSDK;
 import sdk.chat.core.types.ConnectionType;
 import sdk.chat.core.utils.ProfileOption;
@@ -93,9 +92,7 @@ public class ProfileFragment extends BaseFragment {
     }
 
     public void addListeners() {
-        dm.add(ChatSDK.events().sourceOnMain()
-                .filter(NetworkEvent.filterUserEntityID(getUser().getEntityID()))
-                .filter(NetworkEvent.filterType(EventType.UserMetaUpdated, EventType.UserPresenceUpdated))
+        dm.add(ChatSDK.events().forUser(getUser().getEntityID(), EventType.UserMetaUpdated, EventType.UserPresenceUpdated)
                 .observeOn(RX.main())
                 .subscribe(networkEvent -> {
                     reloadData();
@@ -137,6 +137,7 @@ public abstract class ThreadsFragment extends BaseFragment implements SearchSupp
 
         dm.add(ChatSDK.events().sourceOnBackground()
                 .filter(mainEventFilter())
+                .compose(ChatSDK.events().measure("ThreadsFragment.events"))
                 .subscribe(networkEvent -> {
 
                     Logger.debug("Network Event: " + networkEvent.type);
@@ -25,11 +25,15 @@ import java.util.Map;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
+import io.reactivex.Observable;
+import sdk.chat.core.dao.DaoCore;
 import sdk.chat.core.dao.Keys;
 import sdk.chat.core.dao.Message;
 import sdk.chat.core.dao.Thread;
+import sdk.chat.core.events.EventOverflowPolicy;
 import sdk.chat.core.events.EventType;
 import sdk.chat.core.events.NetworkEvent;
+import sdk.chat.core.rx.PageSubscriber;
 import sdk.chat.core.session.ChatSDK;
 import sdk.chat.core.types.MessageSendProgress;
 import sdk.chat.core.types.MessageSendStatus;
@@ -64,6 +68,13 @@ public class ChatView extends LinearLayout implements MessagesListAdapter.OnLoad
 
     protected DisposableMap dm = new DisposableMap();
 
+    protected PageSubscriber<List<Message>> localMessagePages;
+    protected boolean archivedMessagesLoaded = false;
+
+    // The oldest message in the pages received so far. Pages are added to the adapter
+    // asynchronously so the adapter can lag behind this
+    protected Message oldestLoadedMessage;
+
     protected final PrettyTime prettyTime = new PrettyTime(CurrentLocale.get());
 
     protected Delegate delegate;
@@ -183,15 +194,15 @@ public class ChatView extends LinearLayout implements MessagesListAdapter.OnLoad
         }
         listenersAdded = true;
 
-        dm.add(ChatSDK.events().sourceOnMain()
-                .filter(NetworkEvent.filterType(EventType.MessageAdded, EventType.MessageUpdated, EventType.MessageRemoved, EventType.MessageReadReceiptUpdated, EventType.MessageSendStatusUpdated))
-                .filter(NetworkEvent.filterThreadEntityID(delegate.getThread().getEntityID()))
+        dm.add(ChatSDK.events().forThread(delegate.getThread().getEntityID(), EventType.MessageAdded, EventType.MessageUpdated, EventType.MessageRemoved, EventType.MessageReadReceiptUpdated, EventType.MessageSendStatusUpdated)
+                .observeOn(RX.main())
+                .compose(ChatSDK.events().measure("ChatView.messages"))
                 .subscribe(networkEvent -> {
                     networkEvent.debug();
                     Message message = networkEvent.getMessage();
                     // We listed to the MessageAdded event when we receive but we listen to the message created status when we send
                     // Because we need to wait until the message payload is set which happens after it is added to the thread
-                    if (networkEvent.typeIs(EventType.MessageAdded) || (networkEvent.typeIs(EventType.MessageSendStatusUpdated) && networkEvent.getMessageSendProgress().status == MessageSendStatus.Created)) {
+                    if (networkEvent.typeIs(EventType.MessageAdded) || (networkEvent.typeIs(EventType.MessageSendStatusUpdated) && networkEvent.getMessageSendStatus() == MessageSendStatus.Created)) {
                         addMessageToStartOrUpdate(message);
                         if (!AppBackgroundMonitor.shared().inBackground()) {
                             message.markReadIfNecessary();
@@ -218,8 +229,9 @@ public class ChatView extends LinearLayout implements MessagesListAdapter.OnLoad
                     }
                 }));
 
-        dm.add(ChatSDK.events().sourceOnMain()
-                .filter(NetworkEvent.filterType(EventType.UserPresenceUpdated, EventType.UserMetaUpdated))
+        // Presence changes can arrive in bursts. Only the latest update for each user matters
+        Observable<NetworkEvent> userEvents = ChatSDK.events().source().filter(NetworkEvent.filterType(EventType.UserPresenceUpdated, EventType.UserMetaUpdated));
+        dm.add(ChatSDK.events().sourceFlowable(userEvents, EventOverflowPolicy.latestPerKey(100), RX.main())
                 .subscribe(networkEvent -> {
                     if (delegate.getThread().containsUser(networkEvent.getUser())) {
                         notifyDataSetChanged();
@@ -255,20 +267,121 @@ public class ChatView extends LinearLayout implements MessagesListAdapter.OnLoad
                     .loadMoreMessagesAfter(delegate.getThread(), loadMessagesFrom, totalItemsCount != 0)
                     .observeOn(RX.main())
                     .subscribe(this::addMessagesToEnd));
+        } else if (localMessagePages == null || !localMessagePages.isComplete()) {
+            loadMoreLocalMessages();
+        } else if (!archivedMessagesLoaded) {
+            loadMoreArchivedMessages();
         } else {
-            Date loadFromDate = null;
-            if (totalItemsCount != 0) {
-                // This list has the newest first
-                loadFromDate = messageHolders.get(messageHolders.size() - 1).getCreatedAt();
-            }
+            loadMoreMessagesBefore(totalItemsCount);
+        }
+    }
 
-            dm.add(ChatSDK.thread()
-                    .loadMoreMessagesBefore(delegate.getThread(), loadFromDate, totalItemsCount != 0)
+    /**
+     * Page back through the messages that are stored locally. Each page is only read
+     * when the user scrolls to it. Once the local history runs out, we go to the archive
+     * and then the server.
+     */
+    protected void loadMoreLocalMessages() {
+        if (localMessagePages == null || localMessagePages.isDisposed()) {
+            // Continue from the oldest message we've already loaded
+            Message oldest = oldestMessage();
+
+            localMessagePages = new PageSubscriber<>(this::addOlderPage, () -> {
+                if (!messageHolders.isEmpty()) {
+                    loadMoreArchivedMessages();
+                }
+            });
+
+            dm.add(ChatSDK.db().streamMessages(
+                    delegate.getThread().getId(),
+                    oldest != null ? oldest.getDate() : null,
+                    oldest != null ? oldest.getId() : null,
+                    DaoCore.ORDER_DESC,
+                    ChatSDK.config().messagesToLoadPerBatch)
                     .observeOn(RX.main())
-                    .subscribe(this::addMessagesToEnd));
+                    .subscribeWith(localMessagePages));
+        } else {
+            localMessagePages.requestNextPage();
         }
     }
 
+    /**
+     * Restore the next page of messages that were moved to the archive. When the archive
+     * is empty, we go to the server.
+     */
+    protected void loadMoreArchivedMessages() {
+        Thread thread = delegate.getThread();
+        if (ChatSDK.archive() == null || !ChatSDK.archive().hasArchive(thread)) {
+            archivedMessagesLoaded = true;
+            loadMoreMessagesBefore(messageHolders.size());
+            return;
+        }
+
+        Message oldest = oldestMessage();
+        Date before = oldest != null ? oldest.getDate() : null;
+
+        dm.add(ChatSDK.archive()
+                .loadArchivedMessagesAsync(thread, before, ChatSDK.config().messagesToLoadPerBatch)
+                .observeOn(RX.main())
+                .subscribe(messages -> {
+                    if (messages.isEmpty()) {
+                        archivedMessagesLoaded = true;
+                        loadMoreMessagesBefore(messageHolders.size());
+                    } else {
+                        addOlderPage(messages);
+                    }
+                }, ChatSDK.events()));
+    }
+
+    protected void loadMoreMessagesBefore(int totalItemsCount) {
+        Date loadFromDate = null;
+        Message oldest = oldestMessage();
+        if (totalItemsCount != 0 && oldest != null) {
+            loadFromDate = oldest.getDate();
+        }
+
+        dm.add(ChatSDK.thread()
+                .loadMoreMessagesBefore(delegate.getThread(), loadFromDate, loadFromDate != null)
+                .observeOn(RX.main())
+                .subscribe(this::addOlderPage));
+    }
+
+    /**
+     * Record the oldest message of a page as soon as it arrives so the next page is
+     * requested from the right place even if this one hasn't reached the adapter yet
+     */
+    protected void addOlderPage(List<Message> messages) {
+        for (Message message : messages) {
+            if (isOlder(message, oldestLoadedMessage)) {
+                oldestLoadedMessage = message;
+            }
+        }
+        addMessagesToEnd(messages);
+    }
+
+    /**
+     * The anchor for the next page. Falls back to the adapter if no older pages have been
+     * received, for example when only new messages have been added
+     */
+    protected Message oldestMessage() {
+        if (oldestLoadedMessage != null) {
+            return oldestLoadedMessage;
+        }
+        // This list has the newest first
+        return messageHolders.isEmpty() ? null : messageHolders.get(messageHolders.size() - 1).getMessage();
+    }
+
+    protected static boolean isOlder(Message message, Message than) {
+        if (than == null) {
+            return true;
+        }
+        if (message.getDate() == null || than.getDate() == null) {
+            return false;
+        }
+        int compare = message.getDate().compareTo(than.getDate());
+        return compare < 0 || (compare == 0 && message.getId() != null && than.getId() != null && message.getId() < than.getId());
+    }
+
     public void removeMessage(Message message) {
         MessageHolder holder = messageHolderHashMap.get(message);
 
@@ -379,6 +492,9 @@ public class ChatView extends LinearLayout implements MessagesListAdapter.OnLoad
         final List<MessageHolder> holders = new ArrayList<>();
 
         RX.runSingle(() -> {
+            // Load what the holders need for the whole page at once
+            ChatSDK.db().prefetchRelations(messages);
+
             for (Message message : messages) {
                 MessageHolder holder = messageHolderHashMap.get(message);
                 if (holder == null) {
@@ -399,6 +515,14 @@ public class ChatView extends LinearLayout implements MessagesListAdapter.OnLoad
     }
 
     public void clear() {
+        // Paging starts again from the newest message, possibly for a different thread
+        if (localMessagePages != null) {
+            localMessagePages.dispose();
+            localMessagePages = null;
+        }
+        archivedMessagesLoaded = false;
+        oldestLoadedMessage = null;
+
         if (messagesListAdapter != null) {
             messageHolderHashMap.clear();
             messageHolders.clear();
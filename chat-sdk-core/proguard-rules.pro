@@ -14,6 +14,13 @@ public static java.lang.String TABLENAME;
 }
 -keep class **$Properties
 
+# BoundedIdentityScope replaces these fields by name
+-keepclassmembers class org.greenrobot.greendao.AbstractDao {
+    protected final org.greenrobot.greendao.internal.DaoConfig config;
+    protected final org.greenrobot.greendao.identityscope.IdentityScope identityScope;
+    protected final org.greenrobot.greendao.identityscope.IdentityScopeLong identityScopeLong;
+}
+
 # If you do not use SQLCipher:
 -dontwarn org.greenrobot.greendao.database.**
 
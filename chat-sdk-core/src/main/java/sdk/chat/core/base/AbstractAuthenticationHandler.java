@@ -35,6 +35,13 @@ public abstract class AbstractAuthenticationHandler implements AuthenticationHan
      */
     public void setCurrentUserEntityID(String currentUserID) {
 
+        // The thread summaries hold unread counts for one user so they're rebuilt if that changes
+        String summaryUserID = ChatSDK.shared().getKeyStorage().get(Keys.ThreadSummaryUserID);
+        if (summaryUserID != null && !summaryUserID.equals(currentUserID)) {
+            ChatSDK.db().clearThreadSummaries();
+        }
+        ChatSDK.shared().getKeyStorage().put(Keys.ThreadSummaryUserID, currentUserID);
+
         this.currentUserID = currentUserID;
         isAuthenticatedThisSession = true;
         ChatSDK.shared().getKeyStorage().put(Keys.CurrentUserID, currentUserID);
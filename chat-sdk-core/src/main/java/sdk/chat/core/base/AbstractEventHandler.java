@@ -2,13 +2,24 @@ package sdk.chat.core.base;
 
 import com.jakewharton.rxrelay2.PublishRelay;
 
+import java.util.List;
+
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
 import io.reactivex.Scheduler;
 import io.reactivex.annotations.NonNull;
 import io.reactivex.disposables.Disposable;
+import sdk.chat.core.events.BoundedEventFlowable;
+import sdk.chat.core.events.EventBatcher;
+import sdk.chat.core.events.EventInstrumentation;
+import sdk.chat.core.events.EventOverflowMetrics;
+import sdk.chat.core.events.EventOverflowPolicy;
+import sdk.chat.core.events.EventRouter;
 import sdk.chat.core.events.EventType;
 import sdk.chat.core.events.NetworkEvent;
 import sdk.chat.core.handlers.EventHandler;
+import sdk.chat.core.session.ChatSDK;
 import sdk.guru.common.DisposableMap;
 import sdk.guru.common.RX;
 
@@ -19,10 +30,23 @@ public abstract class AbstractEventHandler implements EventHandler {
 
     final protected DisposableMap dm = new DisposableMap();
 
+    final protected EventRouter router = new EventRouter();
+    final protected EventOverflowMetrics overflowMetrics = new EventOverflowMetrics();
+    final protected EventInstrumentation instrumentation;
+
+    protected EventBatcher batcher;
+    protected Observable<List<NetworkEvent>> batchedSource;
+
     public AbstractEventHandler() {
         dm.add(source().filter(NetworkEvent.filterType(EventType.Logout)).subscribe(networkEvent -> {
             dm.dispose();
         }, this));
+
+        // The router isn't disposed on logout because its subscribers manage their own lifecycle
+        source().subscribe(router, this);
+
+        instrumentation = new EventInstrumentation(ChatSDK.config().eventInstrumentationEnabled);
+        instrumentation.start(source(), ChatSDK.config().eventInstrumentationLogIntervalSeconds);
     }
 
     public PublishRelay<NetworkEvent> source() {
@@ -41,6 +65,77 @@ public abstract class AbstractEventHandler implements EventHandler {
         return source().hide().observeOn(scheduler);
     }
 
+    /**
+     * Add before subscribing to record how long the subscriber takes to handle each event.
+     * Does nothing unless instrumentation is enabled
+     */
+    public ObservableTransformer<NetworkEvent, NetworkEvent> measure(String name) {
+        return instrumentation.measure(name);
+    }
+
+    public EventInstrumentation getInstrumentation() {
+        return instrumentation;
+    }
+
+    /**
+     * Events delivered on the main thread through a bounded queue. If the subscriber falls
+     * behind, events are dropped or combined according to the policy instead of queuing
+     * without limit
+     */
+    public Flowable<NetworkEvent> sourceFlowable(EventOverflowPolicy policy) {
+        return sourceFlowable(source().hide(), policy, RX.main());
+    }
+
+    public Flowable<NetworkEvent> sourceFlowable(Observable<NetworkEvent> source, EventOverflowPolicy policy, Scheduler scheduler) {
+        return new BoundedEventFlowable(source, policy, scheduler, overflowMetrics);
+    }
+
+    /**
+     * @return number of events dropped and combined by the bounded streams for each type
+     */
+    public EventOverflowMetrics getOverflowMetrics() {
+        return overflowMetrics;
+    }
+
+    /**
+     * Events for one thread. Only the subscribers for the event's thread are called
+     * @param types event types to deliver or none for every type
+     */
+    public Observable<NetworkEvent> forThread(String entityID, EventType... types) {
+        return router.forThread(entityID, types);
+    }
+
+    /**
+     * Events for one user. Only the subscribers for the event's user are called
+     * @param types event types to deliver or none for every type
+     */
+    public Observable<NetworkEvent> forUser(String entityID, EventType... types) {
+        return router.forUser(entityID, types);
+    }
+
+    /**
+     * Events grouped into batches. Repeated events of the same type for the same thread,
+     * message and user within a batch are combined
+     */
+    public Observable<List<NetworkEvent>> sourceBatched() {
+        synchronized (this) {
+            if (batchedSource == null) {
+                batcher = new EventBatcher(ChatSDK.config().eventBatchWindowMillis, ChatSDK.config().eventBatchMaxSize, RX.computation());
+                batchedSource = source().hide().compose(batcher).share();
+            }
+            return batchedSource;
+        }
+    }
+
+    public Observable<List<NetworkEvent>> sourceBatchedOnMain() {
+        return sourceBatched().observeOn(RX.main());
+    }
+
+    public EventBatcher getBatcher() {
+        sourceBatched();
+        return batcher;
+    }
+
     public Observable<Throwable> errorSourceOnMain() {
         return errorSource.hide().observeOn(RX.main());
     }
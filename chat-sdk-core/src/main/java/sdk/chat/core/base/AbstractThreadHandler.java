@@ -1,5 +1,7 @@
 package sdk.chat.core.base;
 
+import android.util.LongSparseArray;
+
 import androidx.annotation.Nullable;
 
 import java.util.ArrayList;
@@ -109,12 +111,27 @@ public abstract class AbstractThreadHandler implements ThreadHandler {
         message.setMessageStatus(MessageSendStatus.None, false);
 
         if (!thread.typeIs(ThreadType.Public)) {
-            for (User user: thread.getUsers()) {
-                if (user.isMe()) {
-                    message.setUserReadStatus(user, ReadStatus.read(), new Date(), false);
-                } else {
-                    if (ChatSDK.thread().hasVoice(thread, user)) {
-                        message.setUserReadStatus(user, ReadStatus.none(), new Date(), false);
+            if (ChatSDK.config().aggregateReadReceipts) {
+                // Only count the recipients, their read receipts are added as they arrive
+                int recipients = 0;
+                for (User user: thread.getUsers()) {
+                    if (user.isMe() || ChatSDK.thread().hasVoice(thread, user)) {
+                        recipients++;
+                    }
+                }
+                message.setRecipientCount(recipients);
+                message.setReceiptCount(0);
+                message.setDeliveredCount(0);
+                message.setReadCount(0);
+                message.setUserReadStatus(ChatSDK.currentUser(), ReadStatus.read(), new Date(), false);
+            } else {
+                for (User user: thread.getUsers()) {
+                    if (user.isMe()) {
+                        message.setUserReadStatus(user, ReadStatus.read(), new Date(), false);
+                    } else {
+                        if (ChatSDK.thread().hasVoice(thread, user)) {
+                            message.setUserReadStatus(user, ReadStatus.none(), new Date(), false);
+                        }
                     }
                 }
             }
@@ -162,14 +179,19 @@ public abstract class AbstractThreadHandler implements ThreadHandler {
             List<Thread> threads = getThreads(ThreadType.Private, false);
 
             int count = 0;
-            for (Thread t : threads) {
-                if (onePerThread) {
+            if (onePerThread) {
+                // Threads whose last message hasn't been read
+                for (Thread t : threads) {
                     if(!t.isLastMessageWasRead()) {
                         count++;
                     }
                 }
-                else {
-                    count += t.getUnreadMessagesCount();
+            }
+            else {
+                // One grouped query rather than a query per thread
+                LongSparseArray<Integer> unreadCounts = ChatSDK.db().unreadCounts();
+                for (Thread t : threads) {
+                    count += t.getId() != null ? unreadCounts.get(t.getId(), 0) : 0;
                 }
             }
             emitter.onSuccess(count);
@@ -235,10 +257,13 @@ public abstract class AbstractThreadHandler implements ThreadHandler {
             threads = ChatSDK.db().fetchThreadsForCurrentUser();
         }
 
+        // One query for the last message, unread count and weight of every thread
+        ChatSDK.db().loadThreadSummaries(threads);
+
         List<Thread> filteredThreads = new ArrayList<>();
         for(Thread thread : threads) {
             if(thread.typeIs(type) && (!thread.getDeleted() || allowDeleted)) {
-                if (showEmpty || thread.getMessages().size() > 0) {
+                if (showEmpty || thread.hasMessages()) {
                     filteredThreads.add(thread);
                 }
             }
@@ -266,10 +291,7 @@ public abstract class AbstractThreadHandler implements ThreadHandler {
     @Override
     public Completable deleteThread(Thread thread) {
         return Completable.create(emitter -> {
-            for (Message m: thread.getMessages()) {
-                thread.removeMessage(m);
-                m.delete();
-            }
+            thread.removeAllMessages();
             thread.setLoadMessagesFrom(new Date());
             thread.setDeleted(true);
             emitter.onComplete();
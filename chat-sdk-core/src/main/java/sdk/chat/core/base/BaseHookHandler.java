@@ -1,58 +1,188 @@
 package sdk.chat.core.base;
 
+import org.pmw.tinylog.Logger;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import sdk.chat.core.events.LatencyHistogram;
 import sdk.chat.core.handlers.HookHandler;
 import sdk.chat.core.hook.Hook;
+import sdk.chat.core.hook.HookEvent;
+import sdk.chat.core.session.ChatSDK;
+import sdk.guru.common.RX;
 import io.reactivex.Completable;
 
 /**
  * Created by ben on 9/13/17.
+ *
+ * Hooks are stored in lists that are replaced rather than modified so hooks can be added
+ * and removed from any thread while they're being executed. Each list is ordered by
+ * priority.
  */
 
 public class BaseHookHandler implements HookHandler {
 
-    protected HashMap<String, ArrayList<Hook>> hooks = new HashMap<>();
+    protected final Map<String, List<Hook>> hooks = new ConcurrentHashMap<>();
+
+    // Time from execution starting to every inline hook completing
+    protected final Map<String, LatencyHistogram> executionTimes = new ConcurrentHashMap<>();
+    protected final Map<String, AtomicLong> timeouts = new ConcurrentHashMap<>();
+
+    // Higher priority first. The sort is stable so equal priorities keep the order they were added
+    protected static final Comparator<Hook> PriorityOrder = (a, b) -> Integer.compare(b.priority, a.priority);
 
     @Override
     public void addHook(Hook hook, String name) {
-        ArrayList<Hook> existingHooks = hooks.get(name);
-        if(existingHooks == null) {
-            existingHooks = new ArrayList<>();
-        }
-        if(!existingHooks.contains(hook)) {
-            existingHooks.add(hook);
+        synchronized (hooks) {
+            List<Hook> existingHooks = hooks.get(name);
+            if (existingHooks == null || !existingHooks.contains(hook)) {
+                List<Hook> updated = existingHooks != null ? new ArrayList<>(existingHooks) : new ArrayList<>();
+                updated.add(hook);
+                Collections.sort(updated, PriorityOrder);
+                hooks.put(name, Collections.unmodifiableList(updated));
+            }
         }
-        hooks.put(name, existingHooks);
     }
 
     @Override
     public void removeHook(Hook hook, String name) {
-        ArrayList<Hook> existingHooks = hooks.get(name);
-        if(existingHooks != null) {
-            existingHooks.remove(hook);
+        synchronized (hooks) {
+            List<Hook> existingHooks = hooks.get(name);
+            if (existingHooks != null && existingHooks.contains(hook)) {
+                List<Hook> updated = new ArrayList<>(existingHooks);
+                updated.remove(hook);
+                if (updated.isEmpty()) {
+                    hooks.remove(name);
+                } else {
+                    hooks.put(name, Collections.unmodifiableList(updated));
+                }
+            }
         }
     }
 
     @Override
     public Completable executeHook(String name, HashMap<String, Object> data) {
-        ArrayList<Hook> existingHooks = hooks.get(name);
-        ArrayList<Completable> completables = new ArrayList<>();
-        if(existingHooks != null) {
-            for(Hook hook : existingHooks) {
-                completables.add(hook.executeAsync(data).doOnComplete(() -> {
-                    if (hook.removeOnFire) {
-                        removeHook(hook, name);
-                    }
-                }));
+        return Completable.defer(() -> {
+            List<Hook> existingHooks = hooks.get(name);
+            if (existingHooks == null) {
+                return Completable.complete();
+            }
+
+            ArrayList<Completable> completables = new ArrayList<>();
+            for (Hook hook : existingHooks) {
+                Completable completable = execute(hook, name, data);
+                if (hook.mode == Hook.Mode.FireAndForget) {
+                    completable.subscribe(ChatSDK.events());
+                } else {
+                    completables.add(completable);
+                }
             }
+            if (completables.isEmpty()) {
+                return Completable.complete();
+            }
+
+            final long start = System.nanoTime();
+            return Completable.merge(completables).doOnComplete(() -> histogram(name).record(System.nanoTime() - start));
+        });
+    }
+
+    protected Completable execute(Hook hook, String name, HashMap<String, Object> data) {
+        // Only remove the hook when it actually fires, not when we stop waiting for it
+        Completable completable = hook.executeAsync(data).doOnComplete(() -> {
+            if (hook.removeOnFire) {
+                removeHook(hook, name);
+            }
+        });
+
+        long timeout = hook.timeoutMillis != Hook.DefaultTimeout ? hook.timeoutMillis : defaultTimeoutMillis(name);
+        if (timeout <= 0) {
+            return completable;
         }
-        return Completable.merge(completables);
+
+        // The hook is cached so that when we stop waiting it carries on running rather than
+        // being disposed. Its result is then reported to the event handler
+        final Completable running = completable.cache();
+        Completable timer = Completable.timer(timeout, TimeUnit.MILLISECONDS, RX.computation()).doOnComplete(() -> {
+            timeoutCount(name).incrementAndGet();
+            Logger.warn("Hook " + name + " still running after " + timeout + "ms, no longer waiting for it");
+            running.subscribe(ChatSDK.events());
+        });
+        return Completable.ambArray(running, timer);
+    }
+
+    /**
+     * The timeout for hooks that don't set their own
+     */
+    protected long defaultTimeoutMillis(String name) {
+        if (HookEvent.MessageReceived.equals(name)) {
+            return ChatSDK.config().messageReceivedHookTimeoutMillis;
+        }
+        return ChatSDK.config().hookTimeoutMillis;
     }
 
     @Override
     public Completable executeHook(String name) {
         return executeHook(name, null);
     }
+
+    protected LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = executionTimes.get(name);
+        if (histogram == null) {
+            synchronized (executionTimes) {
+                histogram = executionTimes.get(name);
+                if (histogram == null) {
+                    histogram = new LatencyHistogram();
+                    executionTimes.put(name, histogram);
+                }
+            }
+        }
+        return histogram;
+    }
+
+    protected AtomicLong timeoutCount(String name) {
+        AtomicLong count = timeouts.get(name);
+        if (count == null) {
+            synchronized (timeouts) {
+                count = timeouts.get(name);
+                if (count == null) {
+                    count = new AtomicLong();
+                    timeouts.put(name, count);
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Map<String, LatencyHistogram> getExecutionTimes() {
+        Map<String, LatencyHistogram> times = new HashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : executionTimes.entrySet()) {
+            times.put(entry.getKey(), entry.getValue().copy());
+        }
+        return times;
+    }
+
+    @Override
+    public long getTimeoutCount(String name) {
+        AtomicLong count = timeouts.get(name);
+        return count != null ? count.get() : 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> entry : executionTimes.entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue())
+                    .append(", timeouts: ").append(getTimeoutCount(entry.getKey())).append("\n");
+        }
+        return builder.toString();
+    }
 }
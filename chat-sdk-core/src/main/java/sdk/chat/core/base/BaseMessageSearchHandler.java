@@ -0,0 +1,100 @@
+package sdk.chat.core.base;
+
+import androidx.annotation.Nullable;
+
+import org.pmw.tinylog.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import sdk.chat.core.dao.DaoCore;
+import sdk.chat.core.dao.Message;
+import sdk.chat.core.handlers.MessageSearchHandler;
+import sdk.chat.core.session.ChatSDK;
+import sdk.chat.core.types.MessageSearchResult;
+import sdk.guru.common.RX;
+
+/**
+ * Searches the local full text index. Messages whose text changes are collected and
+ * indexed together on the database writer a short time later so indexing doesn't slow
+ * down the code that's saving messages.
+ */
+public class BaseMessageSearchHandler implements MessageSearchHandler {
+
+    // How long to collect changed messages before they're indexed
+    public static long IndexDelayMillis = 250;
+
+    protected final Set<Long> pending = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    protected final AtomicBoolean indexScheduled = new AtomicBoolean();
+
+    @Override
+    public Single<List<MessageSearchResult>> searchMessages(String query, int offset, int limit) {
+        return searchMessages(query, null, offset, limit);
+    }
+
+    @Override
+    public Single<List<MessageSearchResult>> searchMessages(String query, @Nullable Long threadId, int offset, int limit) {
+        return Single.defer(() -> {
+            DaoCore.awaitOpen();
+            return Single.just(DaoCore.searchIndex.search(query, threadId, offset, limit));
+        }).subscribeOn(RX.dbRead());
+    }
+
+    @Override
+    public void messageTextChanged(Message message) {
+        if (message.getId() == null) {
+            return;
+        }
+        pending.add(message.getId());
+        if (indexScheduled.compareAndSet(false, true)) {
+            RX.dbWrite().scheduleDirect(this::indexPending, IndexDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    protected void indexPending() {
+        indexScheduled.set(false);
+
+        List<Long> ids = new ArrayList<>();
+        Iterator<Long> iterator = pending.iterator();
+        while (iterator.hasNext()) {
+            ids.add(iterator.next());
+            iterator.remove();
+        }
+
+        if (!ids.isEmpty()) {
+            try {
+                DaoCore.searchIndex.index(ids);
+            } catch (Exception e) {
+                Logger.error(e, "Failed to index messages");
+            }
+        }
+    }
+
+    /**
+     * Index the messages that were saved before the index existed or that were saved since
+     * the index was last brought up to date. Each batch is a separate task on the database
+     * writer so other writes can run in between
+     */
+    @Override
+    public Completable updateIndex() {
+        return Single.defer(() -> {
+            DaoCore.awaitOpen();
+            return Single.just(DaoCore.searchIndex.getMaxMessageId());
+        }).subscribeOn(RX.dbRead()).flatMapCompletable(upTo -> {
+            final int batchSize = ChatSDK.config().messageSearchIndexBatchSize;
+            final AtomicBoolean more = new AtomicBoolean();
+            return Completable.fromAction(() -> more.set(DaoCore.searchIndex.indexNextBatch(upTo, batchSize)))
+                    .subscribeOn(RX.dbWrite())
+                    .repeatUntil(() -> !more.get());
+        });
+    }
+
+}
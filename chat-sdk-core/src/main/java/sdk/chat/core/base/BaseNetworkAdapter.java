@@ -15,6 +15,7 @@ import sdk.chat.core.handlers.HookHandler;
 import sdk.chat.core.handlers.ImageMessageHandler;
 import sdk.chat.core.handlers.LastOnlineHandler;
 import sdk.chat.core.handlers.LocationMessageHandler;
+import sdk.chat.core.handlers.MessageSearchHandler;
 import sdk.chat.core.handlers.ModerationHandler;
 import sdk.chat.core.handlers.NearbyUsersHandler;
 import sdk.chat.core.handlers.ProfilePicturesHandler;
@@ -47,6 +48,7 @@ public class BaseNetworkAdapter {
     public TypingIndicatorHandler typingIndicator;
     public ModerationHandler moderation;
     public SearchHandler search;
+    public MessageSearchHandler messageSearch = new BaseMessageSearchHandler();
     public PublicThreadHandler publicThread;
     public ProfilePicturesHandler profilePictures;
     public BlockingHandler blocking;
@@ -0,0 +1,336 @@
+package sdk.chat.core.dao;
+
+import android.content.ComponentCallbacks2;
+import android.util.LruCache;
+
+import org.greenrobot.greendao.AbstractDao;
+import org.greenrobot.greendao.AbstractDaoSession;
+import org.greenrobot.greendao.identityscope.IdentityScopeLong;
+import org.greenrobot.greendao.internal.DaoConfig;
+import org.pmw.tinylog.Logger;
+
+import java.lang.reflect.Field;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sdk.chat.core.session.ChatSDK;
+
+/**
+ * An identity scope that keeps the most recently used entities of a type in memory and
+ * lets the rest be garbage collected. greenDAO's session scope holds a weak reference to
+ * every entity it has loaded but never removes the entries for entities that have been
+ * collected, so the map grows for as long as the app runs.
+ *
+ * Entities are held strongly in an LRU of {@link sdk.chat.core.session.Config#identityScopeSize}
+ * and weakly, or softly if {@link sdk.chat.core.session.Config#identityScopeSoftReferences}
+ * is set, after that. Entries for collected entities are removed as new entities are added.
+ * An entity that is still referenced somewhere keeps its identity even after it has left
+ * the LRU, so loading it again returns the same object.
+ */
+public class BoundedIdentityScope<T> extends IdentityScopeLong<T> {
+
+    protected static final List<BoundedIdentityScope<?>> scopes = new CopyOnWriteArrayList<>();
+
+    protected final String name;
+    protected final int maxSize;
+    protected final boolean softReferences;
+
+    // Guarded by the scope lock
+    protected final Map<Long, Reference<T>> map = new HashMap<>();
+    protected final ReferenceQueue<T> queue = new ReferenceQueue<>();
+
+    protected final LruCache<Long, T> recent;
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+    protected final AtomicLong collected = new AtomicLong();
+    protected final AtomicLong trims = new AtomicLong();
+
+    protected static class KeyedWeakReference<T> extends WeakReference<T> {
+        final long key;
+        KeyedWeakReference(long key, T referent, ReferenceQueue<? super T> queue) {
+            super(referent, queue);
+            this.key = key;
+        }
+    }
+
+    protected static class KeyedSoftReference<T> extends SoftReference<T> {
+        final long key;
+        KeyedSoftReference(long key, T referent, ReferenceQueue<? super T> queue) {
+            super(referent, queue);
+            this.key = key;
+        }
+    }
+
+    public BoundedIdentityScope(String name, int maxSize, boolean softReferences) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.softReferences = softReferences;
+        this.recent = new LruCache<>(this.maxSize);
+    }
+
+    /**
+     * Replace the session scopes that greenDAO created for a new session. This has to be
+     * called before the session is used, on the thread that opens the database, so the
+     * fields are published to other threads along with the session by DaoCore's volatile
+     * open flag. The DAOs are generated and keep the scope they're
+     * constructed with in final fields so those fields are replaced too. If that isn't
+     * possible the DAO keeps the default scope
+     */
+    public static void installAll(AbstractDaoSession session) {
+        int size = ChatSDK.config().identityScopeSize;
+        if (size <= 0) {
+            return;
+        }
+        for (AbstractDao<?, ?> dao : session.getAllDaos()) {
+            try {
+                install(dao, size);
+            } catch (Exception e) {
+                Logger.warn(e, "Unable to install a bounded identity scope for " + dao.getTablename());
+            }
+        }
+    }
+
+    /**
+     * Only entities with a numeric key are supported, the others keep the default scope
+     */
+    protected static void install(AbstractDao<?, ?> dao, int size) throws NoSuchFieldException, IllegalAccessException {
+        DaoConfig config = (DaoConfig) field("config").get(dao);
+        if (!config.keyIsNumeric || !(config.getIdentityScope() instanceof IdentityScopeLong)) {
+            return;
+        }
+        BoundedIdentityScope<Object> bounded = new BoundedIdentityScope<>(config.tablename, size, ChatSDK.config().identityScopeSoftReferences);
+
+        // The config scope is the one the session clears
+        config.setIdentityScope(bounded);
+        field("identityScope").set(dao, bounded);
+        field("identityScopeLong").set(dao, bounded);
+
+        scopes.add(bounded);
+    }
+
+    protected static Field field(String name) throws NoSuchFieldException {
+        Field field = AbstractDao.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    /**
+     * Called from {@link ComponentCallbacks2#onTrimMemory(int)}. The more serious the memory
+     * pressure, the more of each LRU is released
+     */
+    public static void trimAll(int level) {
+        for (BoundedIdentityScope<?> scope : scopes) {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+                scope.trimToSize(0);
+            }
+            else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+                scope.trimToSize(scope.maxSize / 2);
+            }
+        }
+    }
+
+    public static List<BoundedIdentityScope<?>> getScopes() {
+        return new ArrayList<>(scopes);
+    }
+
+    /**
+     * Stop tracking the scopes of a session that is no longer used
+     */
+    public static void reset() {
+        scopes.clear();
+    }
+
+    public static String summary() {
+        StringBuilder builder = new StringBuilder();
+        for (BoundedIdentityScope<?> scope : scopes) {
+            builder.append(scope.toString()).append("\n");
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public T get2(long key) {
+        lock();
+        try {
+            return get2NoLock(key);
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public T get2NoLock(long key) {
+        Reference<T> ref = map.get(key);
+        T entity = ref != null ? ref.get() : null;
+        if (entity != null) {
+            recent.put(key, entity);
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return entity;
+    }
+
+    @Override
+    public void put2(long key, T entity) {
+        lock();
+        try {
+            put2NoLock(key, entity);
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public void put2NoLock(long key, T entity) {
+        purge();
+        map.put(key, softReferences ? new KeyedSoftReference<>(key, entity, queue) : new KeyedWeakReference<>(key, entity, queue));
+        recent.put(key, entity);
+    }
+
+    @Override
+    public boolean detach(Long key, T entity) {
+        lock();
+        try {
+            if (entity != null && get2NoLock(key) == entity) {
+                remove(key);
+                return true;
+            }
+            return false;
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long key) {
+        lock();
+        try {
+            map.remove(key);
+            recent.remove(key);
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public void remove(Iterable<Long> keys) {
+        lock();
+        try {
+            for (Long key : keys) {
+                map.remove(key);
+                recent.remove(key);
+            }
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock();
+        try {
+            map.clear();
+            recent.evictAll();
+            while (queue.poll() != null);
+        } finally {
+            unlock();
+        }
+    }
+
+    @Override
+    public void reserveRoom(int count) {
+        // HashMap resizes itself
+    }
+
+    /**
+     * Release the least recently used entities so they can be collected if nothing else
+     * references them. Their entries stay in the scope until they're collected
+     */
+    public void trimToSize(int size) {
+        recent.trimToSize(Math.max(0, size));
+        trims.incrementAndGet();
+        lock();
+        try {
+            purge();
+        } finally {
+            unlock();
+        }
+    }
+
+    // Must be called with the lock held
+    @SuppressWarnings("unchecked")
+    protected void purge() {
+        Reference<? extends T> ref;
+        while ((ref = queue.poll()) != null) {
+            long key = ref instanceof KeyedWeakReference ? ((KeyedWeakReference<T>) ref).key : ((KeyedSoftReference<T>) ref).key;
+            // The entry might already have been replaced by a newer entity
+            if (map.get(key) == ref) {
+                map.remove(key);
+                collected.incrementAndGet();
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of entities held in the LRU
+     */
+    public int getRecentCount() {
+        return recent.size();
+    }
+
+    /**
+     * @return number of entries in the scope including ones that haven't been collected yet
+     */
+    public int getEntryCount() {
+        lock();
+        try {
+            purge();
+            return map.size();
+        } finally {
+            unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getCollectedCount() {
+        return collected.get();
+    }
+
+    public long getTrimCount() {
+        return trims.get();
+    }
+
+    public void resetCounts() {
+        hits.set(0);
+        misses.set(0);
+        collected.set(0);
+        trims.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s - recent: %s/%s, entries: %s, hits: %s, misses: %s, collected: %s, trims: %s",
+                name, getRecentCount(), maxSize, getEntryCount(), getHitCount(), getMissCount(), getCollectedCount(), getTrimCount());
+    }
+}
@@ -7,9 +7,12 @@
 
 package sdk.chat.core.dao;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.database.sqlite.SQLiteDatabase;
 
+import org.greenrobot.greendao.AbstractDao;
 import org.greenrobot.greendao.Property;
 import org.greenrobot.greendao.async.AsyncSession;
 import org.greenrobot.greendao.query.QueryBuilder;
@@ -17,11 +20,17 @@ import org.pmw.tinylog.Logger;
 
 import java.lang.reflect.Constructor;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import sdk.chat.core.interfaces.CoreEntity;
 import sdk.chat.core.session.ChatSDK;
+import sdk.chat.core.utils.AppBackgroundMonitor;
+import sdk.guru.common.RX;
 
 /**
  * Manage all creation, deletion and updating Entities.
@@ -43,6 +52,16 @@ public class DaoCore {
     public static DaoMaster daoMaster;
     public static DaoSession daoSession;
     public static AsyncSession asyncSession;
+    public static EntityIDCache entityIDCache;
+    public static QueryPool queryPool;
+    public static MessageSearchIndex searchIndex;
+    public static WriteBehindQueue writeBehind;
+
+    // Opens the database in the background. Database calls wait for it to finish
+    private static FutureTask<Void> openTask;
+    private static volatile boolean open = false;
+
+    public static final DatabaseStartupTrace startupTrace = new DatabaseStartupTrace();
 
     /** The property of the "EntityID" of the saved object. This entity comes from the server, For example Firebase server save Entities id's with an Char and Integers sequence.
      * The link between Entities in the databse structure is based on a long id generated by the database automatically.
@@ -55,7 +74,7 @@ public class DaoCore {
         dbName = DB_NAME;
         context = ctx;
 
-        if(helper == null)
+        if(openTask == null)
             openDB();
     }
 
@@ -63,14 +82,52 @@ public class DaoCore {
         context = ctx;
         dbName = databaseName;
 
-        if(helper == null)
+        if(openTask == null)
             openDB();
     }
 
-    private static void openDB(){
+    /**
+     * Opening the database runs any migrations so it can be slow. By default it's done on
+     * the database writer so activation doesn't block. Anything that needs the database
+     * waits in {@link #awaitOpen()}
+     */
+    private static void openDB() {
         if (context == null)
             throw new NullPointerException("Context is null, Did you initialized DaoCore?");
 
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                BoundedIdentityScope.trimAll(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+
+            }
+
+            @Override
+            public void onLowMemory() {
+                BoundedIdentityScope.trimAll(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            }
+        });
+
+        openTask = new FutureTask<>(() -> {
+            openDBNow();
+            return null;
+        });
+
+        if (ChatSDK.config().openDatabaseInBackground) {
+            RX.dbWriteExecutor().execute(openTask);
+        } else {
+            openTask.run();
+            awaitOpen();
+        }
+    }
+
+    private static void openDBNow() {
+        startupTrace.openStarted();
+
         if (ChatSDK.config().debug) {
             helper = new DaoMaster.DevOpenHelper(context, dbName, null);
         }
@@ -78,10 +135,96 @@ public class DaoCore {
             helper = new DatabaseUpgradeHelper(context, dbName);
         }
 
+        // Lets reads run on the reader threads while the writer thread is writing
+        helper.setWriteAheadLoggingEnabled(ChatSDK.config().enableWriteAheadLogging);
+
         db = helper.getWritableDatabase();
         daoMaster = new DaoMaster(db);
+        BoundedIdentityScope.reset();
         daoSession = daoMaster.newSession();
+        BoundedIdentityScope.installAll(daoSession);
         asyncSession = daoSession.startAsyncSession();
+        entityIDCache = new EntityIDCache(ChatSDK.config().entityIDCacheSize);
+        queryPool = new QueryPool(daoSession);
+        writeBehind = new WriteBehindQueue(daoSession);
+
+        searchIndex = new MessageSearchIndex(daoSession.getDatabase());
+        searchIndex.createTables();
+
+        startupTrace.openFinished();
+        open = true;
+
+        RX.onMain(() -> AppBackgroundMonitor.shared().addListener(writeBehind));
+
+        if (ChatSDK.config().databaseWarmUpThreadCount > 0) {
+            RX.dbRead().scheduleDirect(DaoCore::warmUp);
+        }
+    }
+
+    /**
+     * Block until the database is open. This returns immediately once it has been opened
+     */
+    public static void awaitOpen() {
+        if (open) {
+            return;
+        }
+        FutureTask<Void> task = openTask;
+        if (task == null) {
+            throw new NullPointerException("Context is null, Did you initialized DaoCore?");
+        }
+        long start = System.nanoTime();
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unable to open the database", e.getCause());
+        } catch (InterruptedException e) {
+            java.lang.Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while opening the database", e);
+        }
+        startupTrace.waited(System.nanoTime() - start);
+    }
+
+    public static boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Load the rows that are needed first into the identity scope. That's the current user,
+     * the most recent threads and their last messages
+     */
+    protected static void warmUp() {
+        try {
+            long start = System.nanoTime();
+
+            String currentUserID = ChatSDK.shared().getKeyStorage().get(Keys.CurrentUserID);
+            if (currentUserID != null) {
+                fetchEntityWithEntityID(User.class, currentUserID);
+            }
+
+            List<ThreadSummary> summaries = daoSession.getThreadSummaryDao().queryBuilder()
+                    .orderDesc(ThreadSummaryDao.Properties.LastMessageDate)
+                    .limit(ChatSDK.config().databaseWarmUpThreadCount)
+                    .list();
+
+            List<Long> threadIds = new ArrayList<>();
+            List<Long> messageIds = new ArrayList<>();
+            for (ThreadSummary summary : summaries) {
+                threadIds.add(summary.getThreadId());
+                if (summary.getLastMessageId() != null) {
+                    messageIds.add(summary.getLastMessageId());
+                }
+            }
+            if (!threadIds.isEmpty()) {
+                daoSession.getThreadDao().queryBuilder().where(ThreadDao.Properties.Id.in(threadIds)).list();
+            }
+            if (!messageIds.isEmpty()) {
+                daoSession.getMessageDao().queryBuilder().where(MessageDao.Properties.Id.in(messageIds)).list();
+            }
+
+            startupTrace.warmUpFinished(System.nanoTime() - start);
+        } catch (Exception e) {
+            Logger.warn(e, "Database warm up failed");
+        }
     }
 
     public static String generateRandomName() {
@@ -92,19 +235,54 @@ public class DaoCore {
      * Fetch entity for given entity ID, If more then one found the first will be returned.
      */
     public static <T extends CoreEntity> T fetchEntityWithEntityID(Class<T> c, Object entityID){
+        awaitOpen();
         Property[] properties = daoSession.getDao(c).getProperties();
 
         if(!properties[1].columnName.equals(EntityID.columnName)) return null; // EntityId is missing from dao table, must always be first property after id
 
-        return fetchEntityWithProperty(c, properties[1], entityID);
+        if (entityID instanceof String) {
+            T entity = fetchCachedEntityWithEntityID(c, (String) entityID);
+            if (entity != null) {
+                return entity;
+            }
+        }
+
+        T entity = fetchEntityWithProperty(c, properties[1], entityID);
+        cacheEntityID(c, entity);
+        return entity;
+    }
+
+    /**
+     * Look up the row id in the entity ID cache and load the entity by primary key. If
+     * the entity has since been deleted or its entity ID has changed, the mapping is dropped
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends CoreEntity> T fetchCachedEntityWithEntityID(Class<T> c, String entityID) {
+        awaitOpen();
+        Long id = entityIDCache.get(c, entityID);
+        if (id != null) {
+            AbstractDao<T, Long> dao = (AbstractDao<T, Long>) daoSession.getDao(c);
+            T entity = dao.load(id);
+            if (entity != null && entityID.equals(entity.getEntityID())) {
+                entityIDCache.recordHit();
+                return entity;
+            }
+            entityIDCache.remove(c, entityID);
+        }
+        entityIDCache.recordMiss();
+        return null;
+    }
+
+    public static <T extends CoreEntity> void cacheEntityID(Class<T> c, T entity) {
+        if (entity != null && entity.getId() != null) {
+            entityIDCache.put(c, entity.getEntityID(), entity.getId());
+        }
     }
 
     /** Fetch an entity for given property and value. If more then one found the first will be returned.*/
     public static <T extends CoreEntity> T fetchEntityWithProperty(Class<T> c, Property property, Object value){
-        QueryBuilder<T> qb = daoSession.queryBuilder(c);
-        qb.where(property.eq(value));
-
-        List<T> list = qb.list();
+        awaitOpen();
+        List<T> list = queryPool.entitiesWithProperty(c, property, value).list();
         if (list != null && list.size()>0)
             return list.get(0) ;
         else return null;
@@ -121,15 +299,15 @@ public class DaoCore {
 
     /** Fetch a list of entities for a given property and value.*/
     public static <T> List<T> fetchEntitiesOfClass(Class<T> c){
+        awaitOpen();
         QueryBuilder<T> qb = daoSession.queryBuilder(c);
         return qb.list();
     }
 
     /** Fetch a list of entities for a given property and value.*/
     public static <T> List<T> fetchEntitiesWithProperty(Class<T> c, Property property, Object value){
-        QueryBuilder<T> qb = daoSession.queryBuilder(c);
-        qb.where(property.eq(value));
-        return qb.list();
+        awaitOpen();
+        return queryPool.entitiesWithProperty(c, property, value).list();
     }
 
     /** Fetch a list of entities for a given properties and values.*/
@@ -143,6 +321,7 @@ public class DaoCore {
     }
 
     public static <T> List<T>  fetchEntitiesWithPropertiesAndOrder(Class<T> c, Property whereOrder, int order, Property properties[], Object... values){
+        awaitOpen();
 
         if (values == null || properties == null)
             throw new NullPointerException("You must have at least one value and one property");
@@ -150,25 +329,7 @@ public class DaoCore {
         if (values.length != properties.length)
             throw new IllegalArgumentException("Values size should match properties size");
 
-        QueryBuilder<T> qb = daoSession.queryBuilder(c);
-        qb.where(properties[0].eq(values[0]));
-
-        for (int i = 0 ; i < values.length ; i++)
-            qb.where(properties[i].eq(values[i]));
-
-        if (whereOrder != null && order != -1)
-            switch (order)
-            {
-                case ORDER_ASC:
-                    qb.orderAsc(whereOrder);
-                    break;
-
-                case ORDER_DESC:
-                    qb.orderDesc(whereOrder);
-                    break;
-            }
-
-        return qb.list();
+        return queryPool.entitiesWithProperties(c, order != -1 ? whereOrder : null, order, properties, values).list();
     }
 
 //    public static <T extends CoreEntity> List<T>  fetchEntitiesWithPropertiesAndOrderAndLimit(Class<T> c, int limit, Property whereOrder, int order, Property properties[], Object... values){
@@ -206,6 +367,7 @@ public class DaoCore {
 
     /* Update, Create and Delete*/
     public static  <T> T createEntity(T entity){
+        awaitOpen();
         if (entity == null) {
             return null;
         }
@@ -216,6 +378,7 @@ public class DaoCore {
     }
 
     public static <T> T deleteEntity(T entity){
+        awaitOpen();
         if (entity == null) {
             return null;
         }
@@ -223,11 +386,20 @@ public class DaoCore {
         daoSession.delete(entity);
         daoSession.clear();
 
+        if (entity instanceof Message) {
+            searchIndex.remove(((Message) entity).getId());
+        }
+
+        if (entity instanceof CoreEntity) {
+            entityIDCache.remove(entity.getClass(), ((CoreEntity) entity).getEntityID());
+        }
+
         Logger.debug("Update Entity: " + entity.toString());
         return entity;
     }
 
     public static <T extends CoreEntity> T updateEntity(T entity){
+        awaitOpen();
         if (entity==null) {
             return null;
         }
@@ -237,6 +409,7 @@ public class DaoCore {
     }
 
     public static boolean connectUserAndThread(User user, Thread thread){
+        awaitOpen();
         Logger.debug("connectUserAndThread, CoreUser ID: %s, Name: %s, ThreadID: %s",  + user.getId(), user.getName(), thread.getId());
         if(!thread.hasUser(user)) {
             UserThreadLink linkData = new UserThreadLink();
@@ -244,22 +417,46 @@ public class DaoCore {
             linkData.setThread(thread);
             linkData.setUserId(user.getId());
             linkData.setUser(user);
-            createEntity(linkData);
+            daoSession.runInTx(() -> {
+                createEntity(linkData);
+                thread.updateMemberHash();
+            });
             return true;
         }
         return false;
     }
 
     public static boolean breakUserAndThread(User user, Thread thread){
+        awaitOpen();
         Logger.debug("breakUserAndThread, CoreUser ID: %s, Name: %s, ThreadID: %s",  + user.getId(), user.getName(), thread.getId());
         UserThreadLink linkData = fetchEntityWithProperties(UserThreadLink.class, new Property[] {UserThreadLinkDao.Properties.ThreadId, UserThreadLinkDao.Properties.UserId}, thread.getId(), user.getId());
         if(linkData != null) {
-            deleteEntity(linkData);
+            daoSession.runInTx(() -> {
+                deleteEntity(linkData);
+                thread.updateMemberHash();
+            });
             return true;
         }
         return false;
     }
 
+    /**
+     * Order independent hash of a thread's members so a thread can be found by its members
+     * with an indexed lookup. Collisions are possible so the members of a match should be checked
+     * @param userIds the member user ids in ascending order
+     */
+    public static long memberHash(SortedSet<Long> userIds) {
+        long hash = 1125899906842597L;
+        for (Long id : userIds) {
+            hash = 31 * hash + (id ^ (id >>> 32));
+        }
+        // Spread the bits so similar member sets don't end up with similar hashes
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
     @SuppressWarnings("unchecked") public static <T> T getEntityForClass(Class<T> c){
         // Create the new entity.
         Class<T> clazz;
@@ -14,10 +14,10 @@ import org.greenrobot.greendao.identityscope.IdentityScopeType;
 
 // THIS CODE IS GENERATED BY greenDAO, DO NOT EDIT.
 /**
- * Master of DAO (schema version 15): knows all DAOs.
+ * Master of DAO (schema version 17): knows all DAOs.
  */
 public class DaoMaster extends AbstractDaoMaster {
-    public static final int SCHEMA_VERSION = 15;
+    public static final int SCHEMA_VERSION = 21;
 
     /** Creates underlying database table using DAOs. */
     public static void createAllTables(Database db, boolean ifNotExists) {
@@ -31,6 +31,7 @@ public class DaoMaster extends AbstractDaoMaster {
         UserThreadLinkMetaValueDao.createTable(db, ifNotExists);
         UserMetaValueDao.createTable(db, ifNotExists);
         ReadReceiptUserLinkDao.createTable(db, ifNotExists);
+        ThreadSummaryDao.createTable(db, ifNotExists);
     }
 
     /** Drops underlying database table using DAOs. */
@@ -45,6 +46,7 @@ public class DaoMaster extends AbstractDaoMaster {
         UserThreadLinkMetaValueDao.dropTable(db, ifExists);
         UserMetaValueDao.dropTable(db, ifExists);
         ReadReceiptUserLinkDao.dropTable(db, ifExists);
+        ThreadSummaryDao.dropTable(db, ifExists);
     }
 
     /**
@@ -73,6 +75,7 @@ public class DaoMaster extends AbstractDaoMaster {
         registerDaoClass(UserThreadLinkMetaValueDao.class);
         registerDaoClass(UserMetaValueDao.class);
         registerDaoClass(ReadReceiptUserLinkDao.class);
+        registerDaoClass(ThreadSummaryDao.class);
     }
 
     public DaoSession newSession() {
@@ -18,6 +18,7 @@ import sdk.chat.core.dao.Thread;
 import sdk.chat.core.dao.UserThreadLinkMetaValue;
 import sdk.chat.core.dao.UserMetaValue;
 import sdk.chat.core.dao.ReadReceiptUserLink;
+import sdk.chat.core.dao.ThreadSummary;
 
 import sdk.chat.core.dao.MessageDao;
 import sdk.chat.core.dao.UserThreadLinkDao;
@@ -29,6 +30,7 @@ import sdk.chat.core.dao.ThreadDao;
 import sdk.chat.core.dao.UserThreadLinkMetaValueDao;
 import sdk.chat.core.dao.UserMetaValueDao;
 import sdk.chat.core.dao.ReadReceiptUserLinkDao;
+import sdk.chat.core.dao.ThreadSummaryDao;
 
 // THIS CODE IS GENERATED BY greenDAO, DO NOT EDIT.
 
@@ -49,6 +51,7 @@ public class DaoSession extends AbstractDaoSession {
     private final DaoConfig userThreadLinkMetaValueDaoConfig;
     private final DaoConfig userMetaValueDaoConfig;
     private final DaoConfig readReceiptUserLinkDaoConfig;
+    private final DaoConfig threadSummaryDaoConfig;
 
     private final MessageDao messageDao;
     private final UserThreadLinkDao userThreadLinkDao;
@@ -60,6 +63,7 @@ public class DaoSession extends AbstractDaoSession {
     private final UserThreadLinkMetaValueDao userThreadLinkMetaValueDao;
     private final UserMetaValueDao userMetaValueDao;
     private final ReadReceiptUserLinkDao readReceiptUserLinkDao;
+    private final ThreadSummaryDao threadSummaryDao;
 
     public DaoSession(Database db, IdentityScopeType type, Map<Class<? extends AbstractDao<?, ?>>, DaoConfig>
             daoConfigMap) {
@@ -95,6 +99,9 @@ public class DaoSession extends AbstractDaoSession {
         readReceiptUserLinkDaoConfig = daoConfigMap.get(ReadReceiptUserLinkDao.class).clone();
         readReceiptUserLinkDaoConfig.initIdentityScope(type);
 
+        threadSummaryDaoConfig = daoConfigMap.get(ThreadSummaryDao.class).clone();
+        threadSummaryDaoConfig.initIdentityScope(type);
+
         messageDao = new MessageDao(messageDaoConfig, this);
         userThreadLinkDao = new UserThreadLinkDao(userThreadLinkDaoConfig, this);
         userDao = new UserDao(userDaoConfig, this);
@@ -105,6 +112,7 @@ public class DaoSession extends AbstractDaoSession {
         userThreadLinkMetaValueDao = new UserThreadLinkMetaValueDao(userThreadLinkMetaValueDaoConfig, this);
         userMetaValueDao = new UserMetaValueDao(userMetaValueDaoConfig, this);
         readReceiptUserLinkDao = new ReadReceiptUserLinkDao(readReceiptUserLinkDaoConfig, this);
+        threadSummaryDao = new ThreadSummaryDao(threadSummaryDaoConfig, this);
 
         registerDao(Message.class, messageDao);
         registerDao(UserThreadLink.class, userThreadLinkDao);
@@ -116,6 +124,7 @@ public class DaoSession extends AbstractDaoSession {
         registerDao(UserThreadLinkMetaValue.class, userThreadLinkMetaValueDao);
         registerDao(UserMetaValue.class, userMetaValueDao);
         registerDao(ReadReceiptUserLink.class, readReceiptUserLinkDao);
+        registerDao(ThreadSummary.class, threadSummaryDao);
     }
     
     public void clear() {
@@ -129,6 +138,7 @@ public class DaoSession extends AbstractDaoSession {
         userThreadLinkMetaValueDaoConfig.clearIdentityScope();
         userMetaValueDaoConfig.clearIdentityScope();
         readReceiptUserLinkDaoConfig.clearIdentityScope();
+        threadSummaryDaoConfig.clearIdentityScope();
     }
 
     public MessageDao getMessageDao() {
@@ -171,4 +181,8 @@ public class DaoSession extends AbstractDaoSession {
         return readReceiptUserLinkDao;
     }
 
+    public ThreadSummaryDao getThreadSummaryDao() {
+        return threadSummaryDao;
+    }
+
 }
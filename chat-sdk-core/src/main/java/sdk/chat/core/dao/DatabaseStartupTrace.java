@@ -0,0 +1,93 @@
+package sdk.chat.core.dao;
+
+import org.pmw.tinylog.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records how long it took to open the database, how much of that was spent running
+ * migrations and how long callers were blocked waiting for it
+ */
+public class DatabaseStartupTrace {
+
+    protected volatile long openStarted;
+    protected volatile long openMillis = -1;
+
+    protected volatile int upgradedFrom;
+    protected volatile int upgradedTo;
+    protected volatile long migrationMillis;
+
+    protected volatile long warmUpMillis = -1;
+
+    protected final AtomicLong waitCount = new AtomicLong();
+    protected final AtomicLong totalWaitNanos = new AtomicLong();
+
+    protected void openStarted() {
+        openStarted = System.nanoTime();
+    }
+
+    protected void openFinished() {
+        openMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openStarted);
+        Logger.info("Database opened: " + this);
+    }
+
+    protected void migrated(int from, int to, long nanos) {
+        upgradedFrom = from;
+        upgradedTo = to;
+        migrationMillis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    protected void warmUpFinished(long nanos) {
+        warmUpMillis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        Logger.info("Database warm up finished in " + warmUpMillis + "ms");
+    }
+
+    protected void waited(long nanos) {
+        waitCount.incrementAndGet();
+        totalWaitNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @return time taken to open the database including migrations or -1 if it hasn't been opened
+     */
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    /**
+     * @return time spent upgrading the schema or zero if there was no upgrade
+     */
+    public long getMigrationMillis() {
+        return migrationMillis;
+    }
+
+    public int getUpgradedFrom() {
+        return upgradedFrom;
+    }
+
+    public int getUpgradedTo() {
+        return upgradedTo;
+    }
+
+    public long getWarmUpMillis() {
+        return warmUpMillis;
+    }
+
+    /**
+     * @return number of calls that had to wait for the database to open
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    public long getTotalWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        String upgrade = upgradedTo > 0 ? String.format(", migration from %s to %s: %sms", upgradedFrom, upgradedTo, migrationMillis) : "";
+        return String.format("open: %sms%s, waits: %s, total wait: %sms", openMillis, upgrade, getWaitCount(), getTotalWaitMillis());
+    }
+}
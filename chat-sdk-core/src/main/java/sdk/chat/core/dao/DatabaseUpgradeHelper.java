@@ -1,14 +1,20 @@
 package sdk.chat.core.dao;
 
 import android.content.Context;
+import android.database.Cursor;
 
 import org.greenrobot.greendao.Property;
 import org.greenrobot.greendao.database.Database;
+import org.greenrobot.greendao.database.DatabaseStatement;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import sdk.chat.core.types.ReadStatus;
 
 /**
  * Created by ben on 4/13/18.
@@ -26,6 +32,7 @@ public class DatabaseUpgradeHelper extends DaoMaster.OpenHelper {
 
     @Override
     public void onUpgrade(Database db, int oldVersion, int newVersion) {
+        long start = System.nanoTime();
 
         List<Migration> migrations = getMigrations();
 
@@ -35,6 +42,8 @@ public class DatabaseUpgradeHelper extends DaoMaster.OpenHelper {
                 migration.runMigration(db);
             }
         }
+
+        DaoCore.startupTrace.migrated(oldVersion, newVersion, System.nanoTime() - start);
     }
 
     private List<Migration> getMigrations() {
@@ -52,6 +61,12 @@ public class DatabaseUpgradeHelper extends DaoMaster.OpenHelper {
         migrations.add(new MigrationV13());
         migrations.add(new MigrationV14());
         migrations.add(new MigrationV15());
+        migrations.add(new MigrationV16());
+        migrations.add(new MigrationV17());
+        migrations.add(new MigrationV18());
+        migrations.add(new MigrationV19());
+        migrations.add(new MigrationV20());
+        migrations.add(new MigrationV21());
 
         // Sorting just to be safe, in case other people add migrations in the wrong order.
         Comparator<Migration> migrationComparator = (m1, m2) -> m1.getVersion().compareTo(m2.getVersion());
@@ -248,6 +263,177 @@ public class DatabaseUpgradeHelper extends DaoMaster.OpenHelper {
         }
     }
 
+    private static class MigrationV16 implements Migration {
+        @Override
+        public Integer getVersion() {
+            return 16;
+        }
+
+        @Override
+        public void runMigration(Database db) {
+            createIndex(db, "IDX_MESSAGE_THREAD_ID_DATE", MessageDao.TABLENAME, MessageDao.Properties.ThreadId, MessageDao.Properties.Date);
+            createIndex(db, "IDX_READ_RECEIPT_USER_LINK_MESSAGE_ID_USER_ID", ReadReceiptUserLinkDao.TABLENAME, ReadReceiptUserLinkDao.Properties.MessageId, ReadReceiptUserLinkDao.Properties.UserId);
+            createIndex(db, "IDX_USER_THREAD_LINK_USER_ID", UserThreadLinkDao.TABLENAME, UserThreadLinkDao.Properties.UserId);
+            createIndex(db, "IDX_USER_THREAD_LINK_THREAD_ID", UserThreadLinkDao.TABLENAME, UserThreadLinkDao.Properties.ThreadId);
+            createIndex(db, "IDX_MESSAGE_META_VALUE_MESSAGE_ID", MessageMetaValueDao.TABLENAME, MessageMetaValueDao.Properties.MessageId);
+            createIndex(db, "IDX_THREAD_META_VALUE_THREAD_ID", ThreadMetaValueDao.TABLENAME, ThreadMetaValueDao.Properties.ThreadId);
+            createIndex(db, "IDX_USER_META_VALUE_USER_ID", UserMetaValueDao.TABLENAME, UserMetaValueDao.Properties.UserId);
+            createIndex(db, "IDX_USER_THREAD_LINK_META_VALUE_USER_THREAD_LINK_ID", UserThreadLinkMetaValueDao.TABLENAME, UserThreadLinkMetaValueDao.Properties.UserThreadLinkId);
+
+            // Let the query planner pick up the new indexes
+            db.execSQL("ANALYZE");
+        }
+    }
+
+    private static class MigrationV17 implements Migration {
+        @Override
+        public Integer getVersion() {
+            return 17;
+        }
+
+        @Override
+        public void runMigration(Database db) {
+            // The rows are filled in lazily the first time each thread's summary is accessed
+            ThreadSummaryDao.createTable(db, true);
+        }
+    }
+
+    private static class MigrationV18 implements Migration {
+        @Override
+        public Integer getVersion() {
+            return 18;
+        }
+
+        @Override
+        public void runMigration(Database db) {
+            db.execSQL("ALTER TABLE " + MessageMetaValueDao.TABLENAME + " ADD COLUMN " + MessageMetaValueDao.Properties.Type.columnName + " INTEGER");
+
+            // Tag the existing values. Strings are the default so only numbers need updating
+            db.execSQL("UPDATE " + MessageMetaValueDao.TABLENAME + " SET " + MessageMetaValueDao.Properties.Type.columnName + " = " + MetaValueHelper.TypeString);
+
+            DatabaseStatement update = db.compileStatement("UPDATE " + MessageMetaValueDao.TABLENAME + " SET " + MessageMetaValueDao.Properties.Type.columnName + " = ? WHERE " + MessageMetaValueDao.Properties.Id.columnName + " = ?");
+            Cursor cursor = db.rawQuery("SELECT " + MessageMetaValueDao.Properties.Id.columnName + ", " + MessageMetaValueDao.Properties.Value.columnName + " FROM " + MessageMetaValueDao.TABLENAME + " WHERE " + MessageMetaValueDao.Properties.Value.columnName + " IS NOT NULL", null);
+            try {
+                while (cursor.moveToNext()) {
+                    int type = MetaValueHelper.typeOf(cursor.getString(1));
+                    if (type != MetaValueHelper.TypeString) {
+                        update.bindLong(1, type);
+                        update.bindLong(2, cursor.getLong(0));
+                        update.execute();
+                    }
+                }
+            } finally {
+                cursor.close();
+                update.close();
+            }
+        }
+    }
+
+    private static class MigrationV19 implements Migration {
+        @Override
+        public Integer getVersion() {
+            return 19;
+        }
+
+        @Override
+        public void runMigration(Database db) {
+            db.execSQL("ALTER TABLE " + MessageDao.TABLENAME + " ADD COLUMN " + MessageDao.Properties.RecipientCount.columnName + " INTEGER");
+            db.execSQL("ALTER TABLE " + MessageDao.TABLENAME + " ADD COLUMN " + MessageDao.Properties.ReceiptCount.columnName + " INTEGER");
+            db.execSQL("ALTER TABLE " + MessageDao.TABLENAME + " ADD COLUMN " + MessageDao.Properties.DeliveredCount.columnName + " INTEGER");
+            db.execSQL("ALTER TABLE " + MessageDao.TABLENAME + " ADD COLUMN " + MessageDao.Properties.ReadCount.columnName + " INTEGER");
+
+            // Count the existing read receipts so the counts never have to be calculated when
+            // a message is displayed. Every recipient used to have a read receipt so the
+            // receipt count is also the recipient count
+            String receipts = "(SELECT COUNT(*) FROM " + ReadReceiptUserLinkDao.TABLENAME + " WHERE " +
+                    ReadReceiptUserLinkDao.Properties.MessageId.columnName + " = " + MessageDao.TABLENAME + "." + MessageDao.Properties.Id.columnName +
+                    " AND " + ReadReceiptUserLinkDao.Properties.Status.columnName + " != " + ReadStatus.Hide;
+            db.execSQL("UPDATE " + MessageDao.TABLENAME + " SET " +
+                    MessageDao.Properties.RecipientCount.columnName + " = " + receipts + ")" +
+                    ", " + MessageDao.Properties.ReceiptCount.columnName + " = " + receipts + ")" +
+                    ", " + MessageDao.Properties.DeliveredCount.columnName + " = " + receipts + " AND " + ReadReceiptUserLinkDao.Properties.Status.columnName + " >= " + ReadStatus.Delivered + ")" +
+                    ", " + MessageDao.Properties.ReadCount.columnName + " = " + receipts + " AND " + ReadReceiptUserLinkDao.Properties.Status.columnName + " >= " + ReadStatus.Read + ")");
+        }
+    }
+
+    private static class MigrationV20 implements Migration {
+        @Override
+        public Integer getVersion() {
+            return 20;
+        }
+
+        @Override
+        public void runMigration(Database db) {
+            db.execSQL("ALTER TABLE " + ThreadDao.TABLENAME + " ADD COLUMN " + ThreadDao.Properties.MemberHash.columnName + " INTEGER");
+            createIndex(db, "IDX_THREAD_MEMBER_HASH", ThreadDao.TABLENAME, ThreadDao.Properties.MemberHash);
+
+            // Calculate the hash for the existing threads from their user links
+            DatabaseStatement update = db.compileStatement("UPDATE " + ThreadDao.TABLENAME + " SET " + ThreadDao.Properties.MemberHash.columnName + " = ? WHERE " + ThreadDao.Properties.Id.columnName + " = ?");
+            Cursor cursor = db.rawQuery("SELECT " + UserThreadLinkDao.Properties.ThreadId.columnName + ", " + UserThreadLinkDao.Properties.UserId.columnName +
+                    " FROM " + UserThreadLinkDao.TABLENAME +
+                    " WHERE " + UserThreadLinkDao.Properties.ThreadId.columnName + " IS NOT NULL AND " + UserThreadLinkDao.Properties.UserId.columnName + " IS NOT NULL" +
+                    " ORDER BY " + UserThreadLinkDao.Properties.ThreadId.columnName, null);
+            try {
+                Long threadId = null;
+                SortedSet<Long> userIds = new TreeSet<>();
+                while (cursor.moveToNext()) {
+                    long id = cursor.getLong(0);
+                    if (threadId != null && threadId != id) {
+                        updateMemberHash(update, threadId, userIds);
+                        userIds.clear();
+                    }
+                    threadId = id;
+                    userIds.add(cursor.getLong(1));
+                }
+                if (threadId != null) {
+                    updateMemberHash(update, threadId, userIds);
+                }
+            } finally {
+                cursor.close();
+                update.close();
+            }
+        }
+
+        private void updateMemberHash(DatabaseStatement update, long threadId, SortedSet<Long> userIds) {
+            update.bindLong(1, DaoCore.memberHash(userIds));
+            update.bindLong(2, threadId);
+            update.execute();
+        }
+    }
+
+    private static class MigrationV21 implements Migration {
+        @Override
+        public Integer getVersion() {
+            return 21;
+        }
+
+        @Override
+        public void runMigration(Database db) {
+            db.execSQL("ALTER TABLE " + ThreadDao.TABLENAME + " ADD COLUMN " + ThreadDao.Properties.TailMessageId.columnName + " INTEGER");
+
+            // The tail was the last message in date order
+            db.execSQL("UPDATE " + ThreadDao.TABLENAME + " SET " + ThreadDao.Properties.TailMessageId.columnName + " = (" +
+                    "SELECT M." + MessageDao.Properties.Id.columnName + " FROM " + MessageDao.TABLENAME + " M" +
+                    " WHERE M." + MessageDao.Properties.ThreadId.columnName + " = " + ThreadDao.TABLENAME + "." + ThreadDao.Properties.Id.columnName +
+                    " ORDER BY M." + MessageDao.Properties.Date.columnName + " DESC LIMIT 1)");
+        }
+    }
+
+    /**
+     * Creates an index if it doesn't already exist. The names match the ones greenDAO
+     * generates so fresh installs and upgraded installs end up with the same schema
+     */
+    private static void createIndex(Database db, String name, String table, Property... properties) {
+        StringBuilder columns = new StringBuilder();
+        for (Property property : properties) {
+            if (columns.length() > 0) {
+                columns.append(",");
+            }
+            columns.append("\"").append(property.columnName).append("\" ASC");
+        }
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + name + " ON \"" + table + "\" (" + columns + ")");
+    }
+
     private interface Migration {
         Integer getVersion();
         void runMigration(Database db);
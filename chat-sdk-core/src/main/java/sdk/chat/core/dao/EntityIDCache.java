@@ -0,0 +1,86 @@
+package sdk.chat.core.dao;
+
+import android.util.LruCache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache from entity ID to database row id for each entity class. This lets us
+ * load an entity by primary key, which is served from the identity scope, rather than
+ * running a query on the entity ID column every time.
+ */
+public class EntityIDCache {
+
+    protected final Map<Class<?>, LruCache<String, Long>> caches = new ConcurrentHashMap<>();
+    protected final int maxSize;
+
+    protected final AtomicLong hits = new AtomicLong();
+    protected final AtomicLong misses = new AtomicLong();
+
+    public EntityIDCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    protected LruCache<String, Long> cacheForClass(Class<?> c) {
+        LruCache<String, Long> cache = caches.get(c);
+        if (cache == null) {
+            synchronized (caches) {
+                cache = caches.get(c);
+                if (cache == null) {
+                    cache = new LruCache<>(maxSize);
+                    caches.put(c, cache);
+                }
+            }
+        }
+        return cache;
+    }
+
+    public Long get(Class<?> c, String entityID) {
+        if (entityID == null) {
+            return null;
+        }
+        return cacheForClass(c).get(entityID);
+    }
+
+    public void put(Class<?> c, String entityID, Long id) {
+        if (entityID != null && id != null) {
+            cacheForClass(c).put(entityID, id);
+        }
+    }
+
+    public void remove(Class<?> c, String entityID) {
+        if (entityID != null) {
+            cacheForClass(c).remove(entityID);
+        }
+    }
+
+    public void clear() {
+        for (LruCache<String, Long> cache : caches.values()) {
+            cache.evictAll();
+        }
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public void resetCounts() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+}
@@ -82,6 +82,7 @@ public class Keys {
     public static final String PushKeyBody = "chat_sdk_push_body";
 
     public static final String CurrentUserID = "current_user_entity_id";
+    public static final String ThreadSummaryUserID = "thread_summary_user_entity_id";
 
     //Admin Thread
     public static final String ReadOnly = "read-only";
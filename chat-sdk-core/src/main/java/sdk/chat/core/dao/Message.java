@@ -13,6 +13,8 @@ import org.greenrobot.greendao.DaoException;
 import org.greenrobot.greendao.annotation.Entity;
 import org.greenrobot.greendao.annotation.Generated;
 import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
+import org.greenrobot.greendao.annotation.Keep;
 import org.greenrobot.greendao.annotation.ToMany;
 import org.greenrobot.greendao.annotation.ToOne;
 import org.greenrobot.greendao.annotation.Unique;
@@ -29,12 +31,13 @@ import sdk.chat.core.base.AbstractEntity;
 import sdk.chat.core.events.NetworkEvent;
 import sdk.chat.core.interfaces.ThreadType;
 import sdk.chat.core.session.ChatSDK;
-import sdk.chat.core.types.MessageSendProgress;
 import sdk.chat.core.types.MessageSendStatus;
 import sdk.chat.core.types.MessageType;
 import sdk.chat.core.types.ReadStatus;
 
-@Entity
+@Entity(indexes = {
+        @Index(value = "threadId, date")
+})
 public class Message extends AbstractEntity {
 
     @Id
@@ -54,6 +57,13 @@ public class Message extends AbstractEntity {
     private Long nextMessageId;
     private Long previousMessageId;
 
+    // Aggregate read receipt counts used when Config.aggregateReadReceipts is enabled.
+    // Null until they are first needed
+    private Integer recipientCount;
+    private Integer receiptCount;
+    private Integer deliveredCount;
+    private Integer readCount;
+
     @ToMany(referencedJoinProperty = "messageId")
     private List<ReadReceiptUserLink> readReceiptLinks;
 
@@ -72,6 +82,10 @@ public class Message extends AbstractEntity {
     @ToMany(referencedJoinProperty = "messageId")
     private List<MessageMetaValue> metaValues;
 
+    // Decoded meta values by key. Rebuilt when the meta values are changed or reloaded
+    private transient Map<String, Object> decodedMetaValues;
+    private transient List<MessageMetaValue> decodedMetaValuesSource;
+
     /** Used to resolve relations */
     @Generated(hash = 2040040024)
     private transient DaoSession daoSession;
@@ -80,9 +94,10 @@ public class Message extends AbstractEntity {
     @Generated(hash = 859287859)
     private transient MessageDao myDao;
 
-    @Generated(hash = 362877408)
+    @Keep
     public Message(Long id, String entityID, Date date, Integer type, Integer status, Long senderId, Long threadId,
-            Long nextMessageId, Long previousMessageId) {
+            Long nextMessageId, Long previousMessageId, Integer recipientCount, Integer receiptCount,
+            Integer deliveredCount, Integer readCount) {
         this.id = id;
         this.entityID = entityID;
         this.date = date;
@@ -92,6 +107,10 @@ public class Message extends AbstractEntity {
         this.threadId = threadId;
         this.nextMessageId = nextMessageId;
         this.previousMessageId = previousMessageId;
+        this.recipientCount = recipientCount;
+        this.receiptCount = receiptCount;
+        this.deliveredCount = deliveredCount;
+        this.readCount = readCount;
     }
 
     @Generated(hash = 637306882)
@@ -199,23 +218,45 @@ public class Message extends AbstractEntity {
             metaValue.setMessageId(this.getId());
             getMetaValues().add(metaValue);
         }
-        metaValue.setValue(MetaValueHelper.toString(value));
+        metaValue.setTypedValue(value);
         metaValue.setKey(key);
         metaValue.update();
+        clearDecodedMetaValues();
+        if (Keys.MessageText.equals(key) && ChatSDK.messageSearch() != null) {
+            ChatSDK.messageSearch().messageTextChanged(this);
+        }
 //        this.update();
     }
 
+    /**
+     * The meta values decoded using their stored type. The map is cached so repeated
+     * lookups don't need to scan or parse the meta values
+     */
+    protected synchronized Map<String, Object> decodedMetaValues() {
+        List<MessageMetaValue> values = getMetaValues();
+        if (decodedMetaValues == null || decodedMetaValuesSource != values) {
+            Map<String, Object> decoded = new HashMap<>();
+            for (MessageMetaValue v : values) {
+                if (v.getKey() != null) {
+                    decoded.put(v.getKey(), v.getTypedValue());
+                }
+            }
+            decodedMetaValues = decoded;
+            decodedMetaValuesSource = values;
+        }
+        return decodedMetaValues;
+    }
+
+    protected synchronized void clearDecodedMetaValues() {
+        decodedMetaValues = null;
+    }
+
     protected MetaValue<String> metaValue (String key) {
         return MetaValueHelper.metaValueForKey(key, getMetaValues());
     }
 
     public Object valueForKey(String key) {
-        MetaValue<String> value = metaValue(key);
-        if (value != null && value.getValue() != null) {
-            return MetaValueHelper.toObject(value.getValue());
-        } else {
-            return null;
-        }
+        return decodedMetaValues().get(key);
     }
 
     public String stringForKey (String key) {
@@ -264,7 +305,15 @@ public class Message extends AbstractEntity {
 
         Logger.debug("UPDATE READ RECEIPTS");
 
+        if (link == null && status.getValue() == ReadStatus.None && ChatSDK.config().aggregateReadReceipts && !user.isMe()) {
+            // Other users who haven't received the message yet are only counted as recipients.
+            // Our own receipt is always kept because the unread counts depend on it
+            return false;
+        }
+
         if (link == null || link.getStatus() < status.getValue()) {
+            final Integer previousStatus = link != null ? link.getStatus() : null;
+
             if(link == null) {
                 Logger.debug("CREATE LINK - uid: " + user.getId() + " mid: " + this.getId());
 
@@ -278,7 +327,17 @@ public class Message extends AbstractEntity {
             link.setStatus(status.getValue());
             link.setDate(date);
 
-            link.update();
+            final ReadReceiptUserLink updatedLink = link;
+            daoSession.runInTx(() -> {
+                updatedLink.update();
+                updateReceiptCounts(previousStatus, status.getValue());
+
+                // Our own read status is what drives the thread's unread count
+                Thread thread = getThread();
+                if (user.isMe() && thread != null) {
+                    thread.updateSummary();
+                }
+            });
 
             if (notify) {
                 ChatSDK.events().source().accept(NetworkEvent.messageReadReceiptUpdated(this));
@@ -356,9 +415,9 @@ public class Message extends AbstractEntity {
     public void setMessageStatus(@NonNull MessageSendStatus status, boolean notify) {
         if (this.status == null ||  this.status != status.ordinal()) {
             this.status = status.ordinal();
-            this.update();
+            DaoCore.writeBehind.update(this);
             if (notify) {
-                ChatSDK.events().source().accept(NetworkEvent.messageSendStatusChanged(new MessageSendProgress(this)));
+                ChatSDK.events().source().accept(NetworkEvent.messageSendStatusChanged(this, status, null));
             }
         }
     }
@@ -392,6 +451,12 @@ public class Message extends AbstractEntity {
             return ReadStatus.hide();
         }
 
+        // The counts are set when receipts are written. Until then, fall back to the receipts
+        if (ChatSDK.config().aggregateReadReceipts && hasReceiptCounts()) {
+            int userCount = Math.max(recipientCount != null ? recipientCount : 0, this.receiptCount);
+            return readStatusForCounts(userCount, this.deliveredCount, this.readCount);
+        }
+
         int userCount = 0;
         int deliveredCount = 0;
         int readCount = 0;
@@ -407,6 +472,10 @@ public class Message extends AbstractEntity {
                 userCount++;
             }
         }
+        return readStatusForCounts(userCount, deliveredCount, readCount);
+    }
+
+    protected static ReadStatus readStatusForCounts(int userCount, int deliveredCount, int readCount) {
         if (readCount == userCount && userCount != 0) {
             return ReadStatus.read();
         }
@@ -418,6 +487,69 @@ public class Message extends AbstractEntity {
         }
     }
 
+    protected boolean hasReceiptCounts() {
+        return receiptCount != null && deliveredCount != null && readCount != null;
+    }
+
+    /**
+     * Record the number of users the message was sent to. In aggregate mode there are no
+     * read receipts for users who haven't received the message so this is taken from the
+     * server's read map
+     * @return true if the count changed
+     */
+    public boolean updateRecipientCount(int count) {
+        if (recipientCount == null || recipientCount < count) {
+            recipientCount = count;
+            update();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Makes sure the aggregate counts are set, counting the existing read receipts the first
+     * time a receipt is written. Must be called on the writer
+     */
+    protected void ensureReceiptCounts() {
+        if (!hasReceiptCounts()) {
+            int[] counts = ChatSDK.db().readReceiptCounts(getId());
+            receiptCount = counts[0];
+            deliveredCount = counts[1];
+            readCount = counts[2];
+            update();
+        }
+    }
+
+    /**
+     * Updates the aggregate counts after one user's read receipt changes
+     * @param from the previous status or null if the user had no read receipt
+     * @param to the new status
+     */
+    protected void updateReceiptCounts(Integer from, int to) {
+        if (ChatSDK.config().aggregateReadReceipts) {
+            if (!hasReceiptCounts()) {
+                // The receipt is already saved so it will be included in the count
+                ensureReceiptCounts();
+            } else {
+                receiptCount += countIf(to != ReadStatus.Hide) - countIf(from != null && from != ReadStatus.Hide);
+                deliveredCount += countIf(to >= ReadStatus.Delivered) - countIf(from != null && from >= ReadStatus.Delivered);
+                readCount += countIf(to >= ReadStatus.Read) - countIf(from != null && from >= ReadStatus.Read);
+                update();
+            }
+        }
+        else if (receiptCount != null) {
+            // The counts aren't maintained in this mode so they would go out of date
+            receiptCount = null;
+            deliveredCount = null;
+            readCount = null;
+            update();
+        }
+    }
+
+    private static int countIf(boolean value) {
+        return value ? 1 : 0;
+    }
+
     public Long getSenderId() {
         return this.senderId;
     }
@@ -433,7 +565,10 @@ public class Message extends AbstractEntity {
         for (ReadReceiptUserLink link : getReadReceiptLinks()) {
             link.delete();
         }
+        Long id = getId();
         delete();
+        // Row ids can be reused so the index row has to go too
+        DaoCore.searchIndex.remove(id);
     }
 
     public Long getNextMessageId() {
@@ -452,6 +587,38 @@ public class Message extends AbstractEntity {
         this.previousMessageId = previousMessageId;
     }
 
+    public Integer getRecipientCount() {
+        return this.recipientCount;
+    }
+
+    public void setRecipientCount(Integer recipientCount) {
+        this.recipientCount = recipientCount;
+    }
+
+    public Integer getReceiptCount() {
+        return this.receiptCount;
+    }
+
+    public void setReceiptCount(Integer receiptCount) {
+        this.receiptCount = receiptCount;
+    }
+
+    public Integer getDeliveredCount() {
+        return this.deliveredCount;
+    }
+
+    public void setDeliveredCount(Integer deliveredCount) {
+        this.deliveredCount = deliveredCount;
+    }
+
+    public Integer getReadCount() {
+        return this.readCount;
+    }
+
+    public void setReadCount(Integer readCount) {
+        this.readCount = readCount;
+    }
+
     /** To-one relationship, resolved on first access. */
     @Generated(hash = 1145839495)
     public User getSender() {
@@ -596,6 +763,19 @@ public class Message extends AbstractEntity {
         metaValues = null;
     }
 
+    /**
+     * Set the to-many relations from values that were loaded in bulk. Relations that have
+     * already been resolved are left as they are
+     */
+    public synchronized void setPrefetchedRelations(List<MessageMetaValue> metaValues, List<ReadReceiptUserLink> readReceiptLinks) {
+        if (this.metaValues == null) {
+            this.metaValues = metaValues;
+        }
+        if (this.readReceiptLinks == null) {
+            this.readReceiptLinks = readReceiptLinks;
+        }
+    }
+
     /**
      * Convenient call for {@link org.greenrobot.greendao.AbstractDao#delete(Object)}.
      * Entity must attached to an entity context.
@@ -36,6 +36,10 @@ public class MessageDao extends AbstractDao<Message, Long> {
         public final static Property ThreadId = new Property(6, Long.class, "threadId", false, "THREAD_ID");
         public final static Property NextMessageId = new Property(7, Long.class, "nextMessageId", false, "NEXT_MESSAGE_ID");
         public final static Property PreviousMessageId = new Property(8, Long.class, "previousMessageId", false, "PREVIOUS_MESSAGE_ID");
+        public final static Property RecipientCount = new Property(9, Integer.class, "recipientCount", false, "RECIPIENT_COUNT");
+        public final static Property ReceiptCount = new Property(10, Integer.class, "receiptCount", false, "RECEIPT_COUNT");
+        public final static Property DeliveredCount = new Property(11, Integer.class, "deliveredCount", false, "DELIVERED_COUNT");
+        public final static Property ReadCount = new Property(12, Integer.class, "readCount", false, "READ_COUNT");
     }
 
     private DaoSession daoSession;
@@ -63,7 +67,14 @@ public class MessageDao extends AbstractDao<Message, Long> {
                 "\"SENDER_ID\" INTEGER," + // 5: senderId
                 "\"THREAD_ID\" INTEGER," + // 6: threadId
                 "\"NEXT_MESSAGE_ID\" INTEGER," + // 7: nextMessageId
-                "\"PREVIOUS_MESSAGE_ID\" INTEGER);"); // 8: previousMessageId
+                "\"PREVIOUS_MESSAGE_ID\" INTEGER," + // 8: previousMessageId
+                "\"RECIPIENT_COUNT\" INTEGER," + // 9: recipientCount
+                "\"RECEIPT_COUNT\" INTEGER," + // 10: receiptCount
+                "\"DELIVERED_COUNT\" INTEGER," + // 11: deliveredCount
+                "\"READ_COUNT\" INTEGER);"); // 12: readCount
+        // Add Indexes
+        db.execSQL("CREATE INDEX " + constraint + "IDX_MESSAGE_THREAD_ID_DATE ON \"MESSAGE\"" +
+                " (\"THREAD_ID\" ASC,\"DATE\" ASC);");
     }
 
     /** Drops the underlying database table. */
@@ -120,6 +131,26 @@ public class MessageDao extends AbstractDao<Message, Long> {
         if (previousMessageId != null) {
             stmt.bindLong(9, previousMessageId);
         }
+ 
+        Integer recipientCount = entity.getRecipientCount();
+        if (recipientCount != null) {
+            stmt.bindLong(10, recipientCount);
+        }
+ 
+        Integer receiptCount = entity.getReceiptCount();
+        if (receiptCount != null) {
+            stmt.bindLong(11, receiptCount);
+        }
+ 
+        Integer deliveredCount = entity.getDeliveredCount();
+        if (deliveredCount != null) {
+            stmt.bindLong(12, deliveredCount);
+        }
+ 
+        Integer readCount = entity.getReadCount();
+        if (readCount != null) {
+            stmt.bindLong(13, readCount);
+        }
     }
 
     @Override
@@ -170,6 +201,26 @@ public class MessageDao extends AbstractDao<Message, Long> {
         if (previousMessageId != null) {
             stmt.bindLong(9, previousMessageId);
         }
+ 
+        Integer recipientCount = entity.getRecipientCount();
+        if (recipientCount != null) {
+            stmt.bindLong(10, recipientCount);
+        }
+ 
+        Integer receiptCount = entity.getReceiptCount();
+        if (receiptCount != null) {
+            stmt.bindLong(11, receiptCount);
+        }
+ 
+        Integer deliveredCount = entity.getDeliveredCount();
+        if (deliveredCount != null) {
+            stmt.bindLong(12, deliveredCount);
+        }
+ 
+        Integer readCount = entity.getReadCount();
+        if (readCount != null) {
+            stmt.bindLong(13, readCount);
+        }
     }
 
     @Override
@@ -194,7 +245,11 @@ public class MessageDao extends AbstractDao<Message, Long> {
             cursor.isNull(offset + 5) ? null : cursor.getLong(offset + 5), // senderId
             cursor.isNull(offset + 6) ? null : cursor.getLong(offset + 6), // threadId
             cursor.isNull(offset + 7) ? null : cursor.getLong(offset + 7), // nextMessageId
-            cursor.isNull(offset + 8) ? null : cursor.getLong(offset + 8) // previousMessageId
+            cursor.isNull(offset + 8) ? null : cursor.getLong(offset + 8), // previousMessageId
+            cursor.isNull(offset + 9) ? null : cursor.getInt(offset + 9), // recipientCount
+            cursor.isNull(offset + 10) ? null : cursor.getInt(offset + 10), // receiptCount
+            cursor.isNull(offset + 11) ? null : cursor.getInt(offset + 11), // deliveredCount
+            cursor.isNull(offset + 12) ? null : cursor.getInt(offset + 12) // readCount
         );
         return entity;
     }
@@ -210,6 +265,10 @@ public class MessageDao extends AbstractDao<Message, Long> {
         entity.setThreadId(cursor.isNull(offset + 6) ? null : cursor.getLong(offset + 6));
         entity.setNextMessageId(cursor.isNull(offset + 7) ? null : cursor.getLong(offset + 7));
         entity.setPreviousMessageId(cursor.isNull(offset + 8) ? null : cursor.getLong(offset + 8));
+        entity.setRecipientCount(cursor.isNull(offset + 9) ? null : cursor.getInt(offset + 9));
+        entity.setReceiptCount(cursor.isNull(offset + 10) ? null : cursor.getInt(offset + 10));
+        entity.setDeliveredCount(cursor.isNull(offset + 11) ? null : cursor.getInt(offset + 11));
+        entity.setReadCount(cursor.isNull(offset + 12) ? null : cursor.getInt(offset + 12));
      }
     
     @Override
@@ -4,6 +4,8 @@ import org.greenrobot.greendao.DaoException;
 import org.greenrobot.greendao.annotation.Entity;
 import org.greenrobot.greendao.annotation.Generated;
 import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
+import org.greenrobot.greendao.annotation.Keep;
 import org.greenrobot.greendao.annotation.ToOne;
 
 @Entity
@@ -14,7 +16,9 @@ public class MessageMetaValue implements MetaValue<String> {
 
     private String key;
     private String value;
+    private Integer type;
 
+    @Index
     private Long messageId;
 
     @ToOne(joinProperty = "messageId")
@@ -28,11 +32,12 @@ public class MessageMetaValue implements MetaValue<String> {
     @Generated(hash = 1491679537)
     private transient MessageMetaValueDao myDao;
 
-    @Generated(hash = 304350448)
-    public MessageMetaValue(Long id, String key, String value, Long messageId) {
+    @Keep
+    public MessageMetaValue(Long id, String key, String value, Integer type, Long messageId) {
         this.id = id;
         this.key = key;
         this.value = value;
+        this.type = type;
         this.messageId = messageId;
     }
 
@@ -63,6 +68,26 @@ public class MessageMetaValue implements MetaValue<String> {
         this.value = value;
     }
 
+    public Integer getType() {
+        return this.type;
+    }
+
+    public void setType(Integer type) {
+        this.type = type;
+    }
+
+    /**
+     * Stores the value as a string along with its type tag
+     */
+    public void setTypedValue(Object value) {
+        this.value = MetaValueHelper.toString(value);
+        this.type = MetaValueHelper.typeOf(value);
+    }
+
+    public Object getTypedValue() {
+        return MetaValueHelper.toObject(value, type);
+    }
+
     public Long getId() {
         return this.id;
     }
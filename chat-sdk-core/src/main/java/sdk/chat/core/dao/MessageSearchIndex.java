@@ -0,0 +1,268 @@
+package sdk.chat.core.dao;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+
+import androidx.annotation.Nullable;
+
+import org.greenrobot.greendao.database.Database;
+import org.pmw.tinylog.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import sdk.chat.core.types.MessageSearchResult;
+
+/**
+ * A SQLite FTS4 index over the text of each message. The index table isn't managed by
+ * greenDAO. Its row id is the message id and a separate state row records how far the
+ * background indexer has got so the index can be built in batches and resumed.
+ *
+ * FTS4 on Android has no ranking function so results are returned newest first.
+ */
+public class MessageSearchIndex {
+
+    public static final String TABLENAME = "MESSAGE_SEARCH";
+    public static final String STATE_TABLENAME = "MESSAGE_SEARCH_STATE";
+
+    // Increase this to rebuild the index, for example if the tokenizer changes
+    public static final int Version = 1;
+
+    protected static final String Text = "TEXT";
+    protected static final String StateVersion = "VERSION";
+    protected static final String StateIndexedTo = "INDEXED_TO";
+
+    // SQLite allows 999 bound variables per statement by default
+    protected static final int MaxQueryVariables = 500;
+
+    protected final Database db;
+
+    public MessageSearchIndex(Database db) {
+        this.db = db;
+    }
+
+    /**
+     * Create the tables if they don't exist. If the index was created by a different version
+     * it's dropped so it'll be rebuilt
+     */
+    public void createTables() {
+        db.execSQL("CREATE TABLE IF NOT EXISTS \"" + STATE_TABLENAME + "\" (\"_id\" INTEGER PRIMARY KEY, \"" + StateVersion + "\" INTEGER, \"" + StateIndexedTo + "\" INTEGER)");
+
+        Long version = longForQuery("SELECT " + StateVersion + " FROM \"" + STATE_TABLENAME + "\" WHERE _id = 1");
+        if (version == null || version != Version) {
+            db.execSQL("DROP TABLE IF EXISTS \"" + TABLENAME + "\"");
+            db.execSQL("INSERT OR REPLACE INTO \"" + STATE_TABLENAME + "\" (_id, " + StateVersion + ", " + StateIndexedTo + ") VALUES (1, " + Version + ", 0)");
+        }
+
+        try {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS \"" + TABLENAME + "\" USING fts4(" + Text + ", tokenize=unicode61)");
+        } catch (Exception e) {
+            // The unicode tokenizer isn't available before SQLite 3.7.13
+            Logger.warn("Unicode tokenizer unavailable, using the simple tokenizer");
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS \"" + TABLENAME + "\" USING fts4(" + Text + ")");
+        }
+    }
+
+    /**
+     * The id of the last message that the background indexer has processed
+     */
+    public long getIndexedTo() {
+        Long indexedTo = longForQuery("SELECT " + StateIndexedTo + " FROM \"" + STATE_TABLENAME + "\" WHERE _id = 1");
+        return indexedTo != null ? indexedTo : 0;
+    }
+
+    public long getMaxMessageId() {
+        Long max = longForQuery("SELECT MAX(" + MessageDao.Properties.Id.columnName + ") FROM \"" + MessageDao.TABLENAME + "\"");
+        return max != null ? max : 0;
+    }
+
+    /**
+     * Index the messages with an id greater than the indexed to mark, up to the batch size.
+     * The mark is moved forward in the same transaction
+     * @return true if there are more messages to index
+     */
+    public boolean indexNextBatch(long upTo, int batchSize) {
+        final long from = getIndexedTo();
+        if (from >= upTo) {
+            return false;
+        }
+        final long to = Math.min(upTo, from + Math.max(1, batchSize));
+
+        db.beginTransaction();
+        try {
+            // Rows might have been added since by the incremental indexer
+            db.execSQL("DELETE FROM \"" + TABLENAME + "\" WHERE docid > ? AND docid <= ?", new Object[] {from, to});
+            db.execSQL("INSERT INTO \"" + TABLENAME + "\" (docid, " + Text + ")" +
+                    " SELECT " + MessageMetaValueDao.Properties.MessageId.columnName + ", " + MessageMetaValueDao.Properties.Value.columnName +
+                    " FROM \"" + MessageMetaValueDao.TABLENAME + "\"" +
+                    " WHERE " + MessageMetaValueDao.Properties.Key.columnName + " = ?" +
+                    " AND " + MessageMetaValueDao.Properties.MessageId.columnName + " > ?" +
+                    " AND " + MessageMetaValueDao.Properties.MessageId.columnName + " <= ?" +
+                    " AND " + MessageMetaValueDao.Properties.Value.columnName + " IS NOT NULL" +
+                    " GROUP BY " + MessageMetaValueDao.Properties.MessageId.columnName,
+                    new Object[] {Keys.MessageText, from, to});
+            db.execSQL("UPDATE \"" + STATE_TABLENAME + "\" SET " + StateIndexedTo + " = ? WHERE _id = 1", new Object[] {to});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        return to < upTo;
+    }
+
+    /**
+     * Re-index the text of these messages. If that leaves every message up to the newest of
+     * them indexed, the indexed to mark is moved forward so the background indexer doesn't
+     * index them again
+     */
+    public void index(Collection<Long> messageIds) {
+        List<Long> ids = new ArrayList<>(messageIds);
+        if (ids.isEmpty()) {
+            return;
+        }
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < ids.size(); i += MaxQueryVariables) {
+                String in = placeholders(Math.min(MaxQueryVariables, ids.size() - i));
+                Object[] args = ids.subList(i, Math.min(i + MaxQueryVariables, ids.size())).toArray();
+
+                db.execSQL("DELETE FROM \"" + TABLENAME + "\" WHERE docid IN (" + in + ")", args);
+
+                Object[] insertArgs = new Object[args.length + 1];
+                insertArgs[0] = Keys.MessageText;
+                System.arraycopy(args, 0, insertArgs, 1, args.length);
+
+                db.execSQL("INSERT INTO \"" + TABLENAME + "\" (docid, " + Text + ")" +
+                        " SELECT " + MessageMetaValueDao.Properties.MessageId.columnName + ", " + MessageMetaValueDao.Properties.Value.columnName +
+                        " FROM \"" + MessageMetaValueDao.TABLENAME + "\"" +
+                        " WHERE " + MessageMetaValueDao.Properties.Key.columnName + " = ?" +
+                        " AND " + MessageMetaValueDao.Properties.MessageId.columnName + " IN (" + in + ")" +
+                        " AND " + MessageMetaValueDao.Properties.Value.columnName + " IS NOT NULL" +
+                        " GROUP BY " + MessageMetaValueDao.Properties.MessageId.columnName,
+                        insertArgs);
+            }
+            advanceIndexedTo(Collections.max(ids));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Move the indexed to mark up to this id if every message with text after the mark is
+     * already in the index
+     */
+    protected void advanceIndexedTo(long to) {
+        long from = getIndexedTo();
+        if (to <= from) {
+            return;
+        }
+        Long missing = longForQuery("SELECT EXISTS (SELECT 1 FROM \"" + MessageMetaValueDao.TABLENAME + "\"" +
+                " WHERE " + MessageMetaValueDao.Properties.Key.columnName + " = " + DatabaseUtils.sqlEscapeString(Keys.MessageText) +
+                " AND " + MessageMetaValueDao.Properties.MessageId.columnName + " > " + from +
+                " AND " + MessageMetaValueDao.Properties.MessageId.columnName + " <= " + to +
+                " AND " + MessageMetaValueDao.Properties.Value.columnName + " IS NOT NULL" +
+                " AND " + MessageMetaValueDao.Properties.MessageId.columnName + " NOT IN (SELECT docid FROM \"" + TABLENAME + "\"" +
+                " WHERE docid > " + from + " AND docid <= " + to + "))");
+        if (missing != null && missing == 0) {
+            db.execSQL("UPDATE \"" + STATE_TABLENAME + "\" SET " + StateIndexedTo + " = ? WHERE _id = 1", new Object[] {to});
+        }
+    }
+
+    public void remove(Long messageId) {
+        if (messageId != null) {
+            db.execSQL("DELETE FROM \"" + TABLENAME + "\" WHERE docid = ?", new Object[] {messageId});
+        }
+    }
+
+    public void remove(Collection<Long> messageIds) {
+        List<Long> ids = new ArrayList<>(messageIds);
+        for (int i = 0; i < ids.size(); i += MaxQueryVariables) {
+            List<Long> chunk = ids.subList(i, Math.min(i + MaxQueryVariables, ids.size()));
+            db.execSQL("DELETE FROM \"" + TABLENAME + "\" WHERE docid IN (" + placeholders(chunk.size()) + ")", chunk.toArray());
+        }
+    }
+
+    public void removeMessagesForThread(Long threadId) {
+        db.execSQL("DELETE FROM \"" + TABLENAME + "\" WHERE docid IN (" +
+                "SELECT " + MessageDao.Properties.Id.columnName + " FROM \"" + MessageDao.TABLENAME + "\"" +
+                " WHERE " + MessageDao.Properties.ThreadId.columnName + " = ?)", new Object[] {threadId});
+    }
+
+    /**
+     * Search the message text. Each word in the query is matched as a prefix
+     * @param threadId limit the search to one thread or null to search every thread
+     */
+    public List<MessageSearchResult> search(String query, @Nullable Long threadId, int offset, int limit) {
+        List<MessageSearchResult> results = new ArrayList<>();
+
+        String match = matchExpression(query);
+        if (match == null) {
+            return results;
+        }
+
+        String sql = "SELECT M." + MessageDao.Properties.ThreadId.columnName + ", S.docid" +
+                ", snippet(\"" + TABLENAME + "\", '<b>', '</b>', '...', -1, 12)" +
+                " FROM \"" + TABLENAME + "\" S" +
+                " JOIN \"" + MessageDao.TABLENAME + "\" M ON M." + MessageDao.Properties.Id.columnName + " = S.docid" +
+                " WHERE S." + Text + " MATCH ?" +
+                (threadId != null ? " AND M." + MessageDao.Properties.ThreadId.columnName + " = ?" : "") +
+                " ORDER BY S.docid DESC" +
+                " LIMIT " + Math.max(1, limit) + " OFFSET " + Math.max(0, offset);
+
+        String[] args = threadId != null ? new String[] {match, String.valueOf(threadId)} : new String[] {match};
+
+        Cursor cursor = db.rawQuery(sql, args);
+        try {
+            while (cursor.moveToNext()) {
+                results.add(new MessageSearchResult(cursor.getLong(0), cursor.getLong(1), cursor.getString(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return results;
+    }
+
+    /**
+     * Convert free text into an FTS match expression. The query syntax is stripped so user
+     * input can't produce an invalid expression
+     */
+    public static String matchExpression(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String word : query.split("[\\s\"*^():-]+")) {
+            if (!word.isEmpty()) {
+                if (match.length() > 0) {
+                    match.append(" ");
+                }
+                match.append("\"").append(word).append("\"*");
+            }
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+
+    protected Long longForQuery(String sql) {
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    protected static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(i > 0 ? ",?" : "?");
+        }
+        return builder.toString();
+    }
+
+}
@@ -8,6 +8,12 @@ import java.util.List;
 
 public class MetaValueHelper {
 
+    // Type tags stored alongside string encoded meta values
+    public static final int TypeString = 0;
+    public static final int TypeInteger = 1;
+    public static final int TypeLong = 2;
+    public static final int TypeDouble = 3;
+
     public static <T extends MetaValue<?>> T metaValueForKey (String key, List<T> values) {
         if (values != null) {
             for (T value : values) {
@@ -42,6 +48,92 @@ public class MetaValueHelper {
         }
     }
 
+    /**
+     * The tag to store with a value. Numbers are tagged the same way {@link #toObject(String)}
+     * would have parsed their string form so values read back with the same type as before
+     */
+    public static int typeOf (Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return TypeInteger;
+        }
+        else if (value instanceof Long) {
+            long l = (Long) value;
+            return l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE ? TypeInteger : TypeLong;
+        }
+        else if (value instanceof Double || value instanceof Float) {
+            return TypeDouble;
+        }
+        else if (value instanceof String) {
+            return typeOf((String) value);
+        }
+        return TypeString;
+    }
+
+    /**
+     * Classifies a string value. Only values made up of number characters are parsed so
+     * ordinary text never throws
+     */
+    public static int typeOf (String value) {
+        if (!isNumeric(value)) {
+            return TypeString;
+        }
+        Object object = toObject(value);
+        if (object instanceof Integer) {
+            return TypeInteger;
+        }
+        else if (object instanceof Long) {
+            return TypeLong;
+        }
+        else if (object instanceof Number) {
+            return TypeDouble;
+        }
+        return TypeString;
+    }
+
+    protected static boolean isNumeric (String value) {
+        if (value == null || value.isEmpty()) {
+            return false;
+        }
+        boolean digit = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digit = true;
+            }
+            else if (c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') {
+                return false;
+            }
+        }
+        return digit;
+    }
+
+    /**
+     * Decodes a value using its stored type. Rows without a type fall back to parsing
+     */
+    public static Object toObject (String value, Integer type) {
+        if (value == null) {
+            return null;
+        }
+        if (type == null) {
+            return toObject(value);
+        }
+        try {
+            switch (type) {
+                case TypeInteger:
+                    return Integer.parseInt(value);
+                case TypeLong:
+                    return Long.parseLong(value);
+                case TypeDouble:
+                    return Double.parseDouble(value);
+                default:
+                    return value;
+            }
+        }
+        catch (NumberFormatException e) {
+            return value;
+        }
+    }
+
     public static Object toObject (String value) {
         try {
             return Integer.parseInt(value);
@@ -0,0 +1,237 @@
+package sdk.chat.core.dao;
+
+import org.greenrobot.greendao.Property;
+import org.greenrobot.greendao.query.Query;
+import org.greenrobot.greendao.query.QueryBuilder;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of prebuilt queries for the lookups that run most often. Each query is built
+ * once, then a copy for the calling thread is taken with {@link Query#forCurrentThread()}
+ * and the parameters are rebound. This avoids generating and parsing the SQL on each call.
+ */
+public class QueryPool {
+
+    // Used in place of a missing date bound so the same query can always be reused
+    protected static final long MinDate = Long.MIN_VALUE;
+    protected static final long MaxDate = Long.MAX_VALUE;
+
+    // SQLite treats a negative limit as no limit
+    protected static final int NoLimit = -1;
+
+    protected final DaoSession daoSession;
+    protected final ConcurrentMap<String, Query<?>> queries = new ConcurrentHashMap<>();
+
+    public QueryPool(DaoSession daoSession) {
+        this.daoSession = daoSession;
+    }
+
+    /**
+     * Entities where each property is equal to the corresponding value, optionally ordered
+     */
+    public <T> Query<T> entitiesWithProperties(Class<T> c, Property whereOrder, int order, Property[] properties, Object... values) {
+        StringBuilder key = new StringBuilder(c.getName());
+        for (Property property : properties) {
+            key.append(":").append(property.name);
+        }
+        if (whereOrder != null) {
+            key.append(":").append(whereOrder.name).append(":").append(order);
+        }
+
+        Query<T> query = get(key.toString());
+        if (query == null) {
+            // The first set of values are used as placeholders, they're rebound below
+            QueryBuilder<T> qb = daoSession.queryBuilder(c);
+            for (int i = 0; i < properties.length; i++) {
+                qb.where(properties[i].eq(values[i]));
+            }
+            if (whereOrder != null) {
+                if (order == DaoCore.ORDER_ASC) {
+                    qb.orderAsc(whereOrder);
+                }
+                else if (order == DaoCore.ORDER_DESC) {
+                    qb.orderDesc(whereOrder);
+                }
+            }
+            query = put(key.toString(), qb.build());
+        }
+
+        query = query.forCurrentThread();
+        for (int i = 0; i < values.length; i++) {
+            bind(query, i, values[i]);
+        }
+        return query;
+    }
+
+    public <T> Query<T> entitiesWithProperty(Class<T> c, Property property, Object value) {
+        return entitiesWithProperties(c, null, -1, new Property[] {property}, value);
+    }
+
+    /**
+     * Messages in a thread with a date between from and to (exclusive), newest first. Null
+     * bounds and a limit of zero or less are ignored
+     */
+    public Query<Message> messagesForThread(Long threadId, Date from, Date to, int limit) {
+        String key = "messagesForThread";
+        Query<Message> query = get(key);
+        if (query == null) {
+            QueryBuilder<Message> qb = daoSession.getMessageDao().queryBuilder();
+            qb.where(MessageDao.Properties.ThreadId.eq(0L));
+
+            // Making sure no null messages infected the sort.
+            qb.where(MessageDao.Properties.Date.isNotNull());
+            qb.where(MessageDao.Properties.SenderId.isNotNull());
+
+            qb.where(MessageDao.Properties.Date.lt(MaxDate));
+            qb.where(MessageDao.Properties.Date.gt(MinDate));
+            qb.orderDesc(MessageDao.Properties.Date);
+            qb.limit(1);
+
+            query = put(key, qb.build());
+        }
+
+        query = query.forCurrentThread();
+        query.setParameter(0, threadId);
+        query.setParameter(1, to != null ? to.getTime() : MaxDate);
+        query.setParameter(2, from != null ? from.getTime() : MinDate);
+        query.setLimit(limit > 0 ? limit : NoLimit);
+        return query;
+    }
+
+    /**
+     * Messages in a thread ordered by date. Only ascending and descending order are supported
+     */
+    public Query<Message> messagesWithOrder(Long threadId, int order, int limit) {
+        String key = "messagesWithOrder:" + order;
+        Query<Message> query = get(key);
+        if (query == null) {
+            QueryBuilder<Message> qb = daoSession.getMessageDao().queryBuilder();
+            qb.where(MessageDao.Properties.ThreadId.eq(0L));
+
+            if(order == DaoCore.ORDER_ASC) {
+                qb.orderAsc(MessageDao.Properties.Date);
+            }
+            else if(order == DaoCore.ORDER_DESC) {
+                qb.orderDesc(MessageDao.Properties.Date);
+            }
+
+            // Making sure no null messages infected the sort.
+            qb.where(MessageDao.Properties.Date.isNotNull());
+            qb.limit(1);
+
+            query = put(key, qb.build());
+        }
+
+        query = query.forCurrentThread();
+        query.setParameter(0, threadId);
+        query.setLimit(limit > 0 ? limit : NoLimit);
+        return query;
+    }
+
+    /**
+     * A page of messages in a thread using keyset pagination on (date, id). For descending
+     * order this returns the messages older than the anchor, for ascending order the newer
+     * ones. Messages with the same date as the anchor are ordered by id so none are skipped
+     * or repeated. A null anchor starts from the newest or oldest message.
+     */
+    public Query<Message> messagesPage(Long threadId, Date anchorDate, Long anchorId, int order, int pageSize) {
+        boolean ascending = order == DaoCore.ORDER_ASC;
+
+        String key = "messagesPage:" + ascending;
+        Query<Message> query = get(key);
+        if (query == null) {
+            QueryBuilder<Message> qb = daoSession.getMessageDao().queryBuilder();
+            qb.where(MessageDao.Properties.ThreadId.eq(0L));
+
+            // Making sure no null messages infected the sort.
+            qb.where(MessageDao.Properties.Date.isNotNull());
+            qb.where(MessageDao.Properties.SenderId.isNotNull());
+
+            if (ascending) {
+                qb.whereOr(MessageDao.Properties.Date.gt(MinDate),
+                        qb.and(MessageDao.Properties.Date.eq(MinDate), MessageDao.Properties.Id.gt(Long.MIN_VALUE)));
+                qb.orderAsc(MessageDao.Properties.Date, MessageDao.Properties.Id);
+            } else {
+                qb.whereOr(MessageDao.Properties.Date.lt(MaxDate),
+                        qb.and(MessageDao.Properties.Date.eq(MaxDate), MessageDao.Properties.Id.lt(Long.MAX_VALUE)));
+                qb.orderDesc(MessageDao.Properties.Date, MessageDao.Properties.Id);
+            }
+            qb.limit(1);
+
+            query = put(key, qb.build());
+        }
+
+        long date;
+        long id;
+        if (anchorDate != null) {
+            date = anchorDate.getTime();
+            if (anchorId != null) {
+                id = anchorId;
+            } else {
+                // Without an id, include nothing else at the anchor date
+                id = ascending ? Long.MAX_VALUE : Long.MIN_VALUE;
+            }
+        } else {
+            date = ascending ? MinDate : MaxDate;
+            id = ascending ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+
+        query = query.forCurrentThread();
+        query.setParameter(0, threadId);
+        query.setParameter(1, date);
+        query.setParameter(2, date);
+        query.setParameter(3, id);
+        query.setLimit(pageSize > 0 ? pageSize : NoLimit);
+        return query;
+    }
+
+    public Query<ReadReceiptUserLink> readReceipt(Long messageId, Long userId) {
+        return entitiesWithProperties(ReadReceiptUserLink.class, null, -1, new Property[] {
+                ReadReceiptUserLinkDao.Properties.MessageId,
+                ReadReceiptUserLinkDao.Properties.UserId
+        }, messageId, userId);
+    }
+
+    public Query<UserThreadLink> linksForUser(Long userId) {
+        return entitiesWithProperty(UserThreadLink.class, UserThreadLinkDao.Properties.UserId, userId);
+    }
+
+    public Query<UserThreadLink> linksForThread(Long threadId) {
+        return entitiesWithProperty(UserThreadLink.class, UserThreadLinkDao.Properties.ThreadId, threadId);
+    }
+
+    public void clear() {
+        queries.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> Query<T> get(String key) {
+        return (Query<T>) queries.get(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <T> Query<T> put(String key, Query<T> query) {
+        Query<?> existing = queries.putIfAbsent(key, query);
+        return existing != null ? (Query<T>) existing : query;
+    }
+
+    /**
+     * Query parameters are bound as strings so dates and booleans need to be converted
+     * the same way the query builder would convert them
+     */
+    protected static void bind(Query<?> query, int index, Object value) {
+        if (value instanceof Date) {
+            query.setParameter(index, (Date) value);
+        }
+        else if (value instanceof Boolean) {
+            query.setParameter(index, (Boolean) value);
+        }
+        else {
+            query.setParameter(index, value);
+        }
+    }
+
+}
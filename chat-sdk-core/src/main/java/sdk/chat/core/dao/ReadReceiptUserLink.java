@@ -5,6 +5,7 @@ import org.greenrobot.greendao.DaoException;
 import org.greenrobot.greendao.annotation.Entity;
 import org.greenrobot.greendao.annotation.Generated;
 import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
 import org.greenrobot.greendao.annotation.ToOne;
 
 
@@ -14,7 +15,9 @@ import java.util.Date;
  * Created by ben on 10/5/17.
  */
 
-@Entity
+@Entity(indexes = {
+        @Index(value = "messageId, userId")
+})
 public class ReadReceiptUserLink {
 
     @Id
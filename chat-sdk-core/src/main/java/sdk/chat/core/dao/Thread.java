@@ -5,22 +5,25 @@ import org.greenrobot.greendao.Property;
 import org.greenrobot.greendao.annotation.Entity;
 import org.greenrobot.greendao.annotation.Generated;
 import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
 import org.greenrobot.greendao.annotation.JoinEntity;
 import org.greenrobot.greendao.annotation.Keep;
 import org.greenrobot.greendao.annotation.OrderBy;
 import org.greenrobot.greendao.annotation.ToMany;
 import org.greenrobot.greendao.annotation.ToOne;
 import org.greenrobot.greendao.annotation.Unique;
-import org.greenrobot.greendao.query.Query;
-import org.greenrobot.greendao.query.QueryBuilder;
 import org.pmw.tinylog.Logger;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import io.reactivex.Completable;
 import io.reactivex.Single;
@@ -29,6 +32,7 @@ import sdk.chat.core.base.AbstractEntity;
 import sdk.chat.core.events.NetworkEvent;
 import sdk.chat.core.session.ChatSDK;
 import sdk.chat.core.utils.StringChecker;
+import sdk.guru.common.RX;
 
 // THIS CODE IS GENERATED BY greenDAO, EDIT ONLY INSIDE THE "KEEP"-SECTIONS
 // KEEP INCLUDES - put your custom includes here
@@ -48,6 +52,13 @@ public class Thread extends AbstractEntity {
     private String draft;
     private Date canDeleteMessagesFrom;
 
+    // Hash of the sorted member user ids, used to find a thread by its members
+    @Index
+    private Long memberHash;
+
+    // The last message appended to the thread's linked list of messages
+    private Long tailMessageId;
+
     @ToOne(joinProperty = "creatorId")
     private User creator;
 
@@ -66,6 +77,8 @@ public class Thread extends AbstractEntity {
     @OrderBy("date ASC")
     private List<Message> messages;
 
+    private transient ThreadSummary summary;
+
     /** Used to resolve relations */
     @Generated(hash = 2040040024)
     private transient DaoSession daoSession;
@@ -81,8 +94,9 @@ public class Thread extends AbstractEntity {
         this.id = id;
     }
 
-    @Generated(hash = 2012841452)
-    public Thread(Long id, String entityID, Date creationDate, Integer type, Long creatorId, Date loadMessagesFrom, Boolean deleted, String draft, Date canDeleteMessagesFrom) {
+    @Keep
+    public Thread(Long id, String entityID, Date creationDate, Integer type, Long creatorId, Date loadMessagesFrom, Boolean deleted, String draft, Date canDeleteMessagesFrom,
+            Long memberHash, Long tailMessageId) {
         this.id = id;
         this.entityID = entityID;
         this.creationDate = creationDate;
@@ -92,6 +106,8 @@ public class Thread extends AbstractEntity {
         this.deleted = deleted;
         this.draft = draft;
         this.canDeleteMessagesFrom = canDeleteMessagesFrom;
+        this.memberHash = memberHash;
+        this.tailMessageId = tailMessageId;
     }
 
     public void setMessages(List<Message> messages) {
@@ -117,6 +133,31 @@ public class Thread extends AbstractEntity {
         return users;
     }
 
+    /**
+     * The member user ids, read from the links without loading the users
+     */
+    public SortedSet<Long> getUserIds() {
+        SortedSet<Long> ids = new TreeSet<>();
+        for (UserThreadLink link : DaoCore.queryPool.linksForThread(getId()).list()) {
+            if (link.getUserId() != null) {
+                ids.add(link.getUserId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Recalculates the member hash after users have been added or removed
+     */
+    public void updateMemberHash() {
+        SortedSet<Long> ids = getUserIds();
+        Long hash = ids.isEmpty() ? null : DaoCore.memberHash(ids);
+        if (hash == null ? memberHash != null : !hash.equals(memberHash)) {
+            memberHash = hash;
+            update();
+        }
+    }
+
     public boolean containsUser (User user) {
         for(User u : getUsers()) {
             if (u.equalsEntity(user)) {
@@ -138,11 +179,7 @@ public class Thread extends AbstractEntity {
     }
 
     public Date lastMessageAddedDate(){
-        Message lastMessage = lastMessage();
-        if (lastMessage != null) {
-            return lastMessage.getDate();
-        }
-        return null;
+        return getSummary().getLastMessageDate();
     }
 
     public void addUser(User user) {
@@ -201,15 +238,32 @@ public class Thread extends AbstractEntity {
         return getMessageWithEntityID(messageEntityID) != null;
     }
 
+    /**
+     * Looks the message up by its entity ID rather than loading the thread's messages. The
+     * entity ID column has a unique index and recent lookups are served from the entity ID cache
+     */
     public Message getMessageWithEntityID (String messageEntityID) {
-        for(Message m : getMessages()) {
-            if(m.getEntityID() != null && messageEntityID != null && m.equalsEntityID(messageEntityID)) {
-                return m;
-            }
+        if (messageEntityID == null || getId() == null) {
+            return null;
+        }
+        Message message = DaoCore.fetchEntityWithEntityID(Message.class, messageEntityID);
+        if (message != null && getId().equals(message.getThreadId())) {
+            return message;
         }
         return null;
     }
 
+    public long getMessageCount() {
+        return daoSession.getMessageDao().queryBuilder().where(MessageDao.Properties.ThreadId.eq(getId())).count();
+    }
+
+    /**
+     * Uses the summary so it doesn't need to query the messages
+     */
+    public boolean hasMessages() {
+        return getSummary().getLastMessageId() != null;
+    }
+
     public void removeUsers (User... users) {
         removeUsers(Arrays.asList(users));
     }
@@ -222,28 +276,42 @@ public class Thread extends AbstractEntity {
     /** Fetch messages list from the db for current thread, Messages will be order Desc/Asc on demand.*/
     @Keep
     public List<Message> getMessagesWithOrder(int order, int limit) {
-        QueryBuilder<Message> qb = daoSession.queryBuilder(Message.class);
-        qb.where(MessageDao.Properties.ThreadId.eq(getId()));
+        return DaoCore.queryPool.messagesWithOrder(getId(), order, limit).list();
+    }
+    public Single<List<Message>> getMessagesWithOrderAsync(int order, int limit) {
+        return ThreadAsync.getMessagesWithOrderAsync(this, order, limit);
+    }
 
-        if(order == DaoCore.ORDER_ASC) {
-            qb.orderAsc(MessageDao.Properties.Date);
+    /**
+     * The last message that was appended. Falls back to the newest message if the
+     * tail hasn't been recorded
+     */
+    public Message getTailMessage() {
+        Message tail = null;
+        if (tailMessageId != null) {
+            tail = daoSession.getMessageDao().load(tailMessageId);
         }
-        else if(order == DaoCore.ORDER_DESC) {
-            qb.orderDesc(MessageDao.Properties.Date);
+        if (tail == null) {
+            List<Message> newest = getMessagesWithOrder(DaoCore.ORDER_DESC, 1);
+            if (!newest.isEmpty()) {
+                tail = newest.get(0);
+            }
         }
+        return tail;
+    }
 
-        // Making sure no null messages infected the sort.
-        qb.where(MessageDao.Properties.Date.isNotNull());
-
-        if (limit > 0) {
-            qb.limit(limit);
+    /**
+     * A message that has already been added is either the tail or linked to a neighbour.
+     * Entity IDs are unique so a message that arrives twice is the same row
+     */
+    protected boolean isLinked(Message message, Message tail) {
+        if (message.getId() == null) {
+            return false;
         }
-
-        Query<Message> query = qb.build().forCurrentThread();
-        return query.list();
-    }
-    public Single<List<Message>> getMessagesWithOrderAsync(int order, int limit) {
-        return ThreadAsync.getMessagesWithOrderAsync(this, order, limit);
+        if (tail != null && message.getId().equals(tail.getId())) {
+            return true;
+        }
+        return getId().equals(message.getThreadId()) && (message.getPreviousMessageId() != null || message.getNextMessageId() != null);
     }
 
     public void addMessage(Message message) {
@@ -251,26 +319,172 @@ public class Thread extends AbstractEntity {
     }
 
     public void addMessage(Message message, boolean notify) {
-        message.setThreadId(this.getId());
-        List<Message> messages = getMessages();
-        if (!messages.contains(message)) {
-            if (!messages.isEmpty()) {
-                Message previousMessage = messages.get(messages.size() - 1);
-                previousMessage.setNextMessage(message);
-                previousMessage.update();
-                message.setPreviousMessage(previousMessage);
-                if (notify) {
-                    ChatSDK.events().source().accept(NetworkEvent.messageUpdated(previousMessage));
+        addMessages(Collections.singletonList(message), notify);
+    }
+
+    /**
+     * Append a batch of messages in a single transaction. The messages should be in
+     * ascending date order. The summary is only recalculated once for the whole batch.
+     * Messages that are at least as new as the tail are linked on to it so the thread's
+     * other messages are never loaded. Older messages, for example from a history page,
+     * are placed by date and the tail is never moved backwards
+     */
+    public void addMessages(List<Message> newMessages, boolean notify) {
+        final List<Message> added = new ArrayList<>();
+        final List<Message> updated = new ArrayList<>();
+
+        daoSession.runInTx(() -> {
+            Message tail = getTailMessage();
+            boolean tailChanged = false;
+            boolean insertedBefore = false;
+
+            for (Message message: newMessages) {
+                if (!isLinked(message, tail)) {
+                    message.setThreadId(this.getId());
+                    if (tail == null || isSameOrNewer(message, tail)) {
+                        if (tail != null) {
+                            tail.setNextMessage(message);
+                            tail.update();
+                            message.setPreviousMessage(tail);
+                            updated.add(tail);
+                        }
+                        message.update();
+
+                        // Keep the relation up to date if it has already been loaded
+                        if (messages != null) {
+                            messages.add(message);
+                        }
+
+                        tail = message;
+                        tailChanged = true;
+                    } else {
+                        updated.addAll(insertByDate(message));
+                        insertedBefore = true;
+                    }
+                    added.add(message);
                 }
             }
-            getMessages().add(message);
-            message.update();
-            update();
+            if (tailChanged) {
+                tailMessageId = tail.getId();
+                update();
+            }
+            if (insertedBefore) {
+                resetMessages();
+            }
+            if (!added.isEmpty()) {
+                updateSummary();
+            }
+        });
+
 //            refresh();
-            if (notify) {
-                ChatSDK.events().source().accept(NetworkEvent.messageAdded(message));
+        if (notify) {
+            notifyAdded(added, updated);
+        }
+    }
+
+    /**
+     * Add messages that are older than the tail, for example a page of history. Each
+     * message is linked between its neighbours by date and the tail isn't changed
+     */
+    public void insertMessages(List<Message> olderMessages, boolean notify) {
+        final List<Message> added = new ArrayList<>();
+        final List<Message> updated = new ArrayList<>();
+
+        daoSession.runInTx(() -> {
+            Message tail = getTailMessage();
+            for (Message message: olderMessages) {
+                if (!isLinked(message, tail)) {
+                    message.setThreadId(this.getId());
+                    if (tail == null) {
+                        // An empty thread. The message becomes the tail
+                        message.update();
+                        tail = message;
+                        tailMessageId = message.getId();
+                        update();
+                    } else {
+                        updated.addAll(insertByDate(message));
+                    }
+                    added.add(message);
+                }
+            }
+            if (!added.isEmpty()) {
+                resetMessages();
+                updateSummary();
+            }
+        });
+
+        if (notify) {
+            notifyAdded(added, updated);
+        }
+    }
+
+    protected static boolean isSameOrNewer(Message message, Message tail) {
+        // A message without a date is treated as new
+        return message.getDate() == null || tail.getDate() == null || message.getDate().compareTo(tail.getDate()) >= 0;
+    }
+
+    /**
+     * Link the message between the newest message at or before its date and the message
+     * after that
+     * @return the neighbours that were updated
+     */
+    protected List<Message> insertByDate(Message message) {
+        List<Message> neighbours = new ArrayList<>();
+
+        Message previous = null;
+        if (message.getDate() != null) {
+            List<Message> before = daoSession.getMessageDao().queryBuilder()
+                    .where(MessageDao.Properties.ThreadId.eq(getId()),
+                            MessageDao.Properties.Id.notEq(message.getId()),
+                            MessageDao.Properties.Date.le(message.getDate()))
+                    .orderDesc(MessageDao.Properties.Date, MessageDao.Properties.Id)
+                    .limit(1)
+                    .list();
+            if (!before.isEmpty()) {
+                previous = before.get(0);
+            }
+        }
+
+        Message next;
+        if (previous != null) {
+            next = previous.getNextMessage();
+        } else {
+            // The message is the oldest so it goes before the current oldest message
+            List<Message> oldest = daoSession.getMessageDao().queryBuilder()
+                    .where(MessageDao.Properties.ThreadId.eq(getId()),
+                            MessageDao.Properties.Id.notEq(message.getId()))
+                    .orderAsc(MessageDao.Properties.Date, MessageDao.Properties.Id)
+                    .limit(1)
+                    .list();
+            next = oldest.isEmpty() ? null : oldest.get(0);
+        }
+
+        message.setPreviousMessage(previous);
+        message.setNextMessage(next);
+        message.update();
+
+        if (previous != null) {
+            previous.setNextMessage(message);
+            previous.update();
+            neighbours.add(previous);
+        }
+        if (next != null) {
+            next.setPreviousMessage(message);
+            next.update();
+            neighbours.add(next);
+        }
+        return neighbours;
+    }
+
+    protected void notifyAdded(List<Message> added, List<Message> updated) {
+        for (Message message : new LinkedHashSet<>(updated)) {
+            if (!added.contains(message)) {
+                ChatSDK.events().source().accept(NetworkEvent.messageUpdated(message));
             }
         }
+        for (Message message : added) {
+            ChatSDK.events().source().accept(NetworkEvent.messageAdded(message));
+        }
     }
 
     public void setMetaValue(String key, Object value) {
@@ -302,8 +516,12 @@ public class Thread extends AbstractEntity {
 
             metaValue.setValue(value);
             metaValue.setKey(key);
-            metaValue.update();
-            update();
+            DaoCore.writeBehind.update(metaValue);
+            DaoCore.writeBehind.update(this);
+
+            if (Keys.Weight.equals(key)) {
+                updateSummary();
+            }
 
             if (notify) {
                 ChatSDK.events().source().accept(NetworkEvent.threadMetaUpdated(this));
@@ -357,6 +575,10 @@ public class Thread extends AbstractEntity {
             metaValue.delete();
             resetMetaValues();
             update();
+
+            if (Keys.Weight.equals(key)) {
+                updateSummary();
+            }
         }
 
     }
@@ -377,46 +599,43 @@ public class Thread extends AbstractEntity {
         removeMessage(message, true);
     }
 
+    /**
+     * Remove the message and link its neighbours to each other. Only the neighbours are
+     * loaded, not the thread's other messages
+     */
     public void removeMessage(Message message, boolean notify) {
 
-        List<Message> messages = getMessages();
-        int indexOfMessage = messages.indexOf(message);
-        if (indexOfMessage >= 0) {
-            Message previousMessage = null;
-            Message nextMessage = null;
-
-            // If it's not the first text
-            if (indexOfMessage > 0) {
-                previousMessage = messages.get(indexOfMessage - 1);
-            }
-            // If it's not the last text
-            if (indexOfMessage < messages.size() - 1) {
-                nextMessage = messages.get(indexOfMessage + 1);
-            }
-            if (previousMessage != null) {
-                previousMessage.setNextMessage(nextMessage);
-                previousMessage.update();
-                if (notify) {
-                    ChatSDK.events().source().accept(NetworkEvent.messageUpdated(previousMessage));
-                }
+        final Message previous = message.getPreviousMessage();
+        final Message next = message.getNextMessage();
+
+        daoSession.runInTx(() -> {
+            if (previous != null) {
+                previous.setNextMessage(next);
+                previous.update();
             }
-            if (nextMessage != null) {
-                nextMessage.setPreviousMessage(previousMessage);
-                nextMessage.update();
-                if (notify) {
-                    ChatSDK.events().source().accept(NetworkEvent.messageUpdated(nextMessage));
-                }
+            if (message.getId() != null && message.getId().equals(tailMessageId)) {
+                // Falls back to the newest message if there's no previous message
+                tailMessageId = previous != null ? previous.getId() : null;
+            }
+            if (next != null) {
+                next.setPreviousMessage(previous);
+                next.update();
             }
 
-            messages.remove(message);
-        }
-
-        message.cascadeDelete();
+            message.cascadeDelete();
 
-        update();
-        resetMessages();
+            update();
+            resetMessages();
+            updateSummary();
+        });
 
         if(notify) {
+            if (previous != null) {
+                ChatSDK.events().source().accept(NetworkEvent.messageUpdated(previous));
+            }
+            if (next != null) {
+                ChatSDK.events().source().accept(NetworkEvent.messageUpdated(next));
+            }
             ChatSDK.events().source().accept(NetworkEvent.messageRemoved(message));
         }
     }
@@ -431,7 +650,8 @@ public class Thread extends AbstractEntity {
     }
 
     public int getUnreadMessagesCount() {
-        return ChatSDK.db().fetchUnreadMessagesForThread(getId()).size();
+        Integer count = getSummary().getUnreadCount();
+        return count != null ? count : 0;
 //
 //        int count = 0;
 //        List<Message> messages = getMessagesWithOrder(DaoCore.ORDER_DESC);
@@ -446,8 +666,8 @@ public class Thread extends AbstractEntity {
     }
 
     public boolean isLastMessageWasRead(){
-        List<Message> messages = getMessagesWithOrder(DaoCore.ORDER_DESC);
-        return messages == null || messages.size() == 0 || messages.get(0).isRead();
+        Message lastMessage = lastMessage();
+        return lastMessage == null || lastMessage.isRead();
     }
 
     public boolean isDeleted() {
@@ -551,11 +771,7 @@ public class Thread extends AbstractEntity {
     }
 
     public Date getLastMessageAddedDate () {
-        Message lastMessage = lastMessage();
-        if(lastMessage != null && lastMessage.getDate() != null) {
-            return lastMessage.getDate();
-        }
-        return null;
+        return lastMessageAddedDate();
     }
 
     public Integer getType() {
@@ -575,12 +791,74 @@ public class Thread extends AbstractEntity {
     }
 
     public Message lastMessage () {
-        List<Message> messages = getMessagesWithOrder(DaoCore.ORDER_DESC, 1);
-        if (messages.size() > 0) {
-            return messages.get(0);
-        } else {
-            return null;
+        Long lastMessageId = getSummary().getLastMessageId();
+        if (lastMessageId != null) {
+            return daoSession.getMessageDao().load(lastMessageId);
         }
+        return null;
+    }
+
+    /**
+     * The denormalized last message, unread count and weight for this thread. This can be
+     * called on the main thread so it never writes. If the row doesn't exist yet, the values
+     * are calculated and the row is stored later on the database writer
+     */
+    public ThreadSummary getSummary() {
+        if (summary == null) {
+            ThreadSummary existing = ChatSDK.db().fetchThreadSummary(getId());
+            if (existing != null) {
+                summary = existing;
+            } else {
+                final ThreadSummary calculated = calculateSummary();
+                summary = calculated;
+                RX.dbWrite().scheduleDirect(() -> {
+                    // Unless it's been saved in the meantime
+                    if (calculated.getId() == null) {
+                        updateSummary();
+                    }
+                });
+            }
+        }
+        return summary;
+    }
+
+    public void setSummary(ThreadSummary summary) {
+        this.summary = summary;
+    }
+
+    /**
+     * Recalculate the summary row. This should be called inside the same transaction
+     * that modifies the thread's messages or read receipts
+     */
+    public ThreadSummary updateSummary() {
+        ThreadSummary summary = calculateSummary();
+        daoSession.getThreadSummaryDao().insertOrReplace(summary);
+        this.summary = summary;
+        return summary;
+    }
+
+    /**
+     * Calculate the summary values without saving them
+     */
+    protected ThreadSummary calculateSummary() {
+        ThreadSummary summary = this.summary;
+        if (summary == null) {
+            summary = ChatSDK.db().fetchThreadSummary(getId());
+        }
+        if (summary == null) {
+            summary = new ThreadSummary();
+            summary.setThreadId(getId());
+        }
+
+        List<Message> messages = getMessagesWithOrder(DaoCore.ORDER_DESC, 1);
+        Message lastMessage = messages.isEmpty() ? null : messages.get(0);
+
+        summary.setLastMessageId(lastMessage != null ? lastMessage.getId() : null);
+        summary.setLastMessageDate(lastMessage != null ? lastMessage.getDate() : null);
+        summary.setUnreadCount(ChatSDK.db().fetchUnreadMessageCountForThread(getId()));
+        summary.setWeight(getWeight());
+
+        return summary;
     }
 
     public Long getCreatorId() {
@@ -823,15 +1101,45 @@ public class Thread extends AbstractEntity {
     }
 
     public int indexOfFirstDeletableMessage() {
-        List<Message> messages = getMessages();
-        if (messages == null || messages.isEmpty()) {
+        long count = getMessageCount();
+        if (count == 0) {
             return -1;
         }
-        int index = messages.size() - ChatSDK.config().messageDeletionListenerLimit;
+        long index = count - ChatSDK.config().messageDeletionListenerLimit;
         if (index < 0) {
             return 0;
         }
-        return index;
+        return (int) index;
+    }
+
+    /**
+     * The message at {@link #indexOfFirstDeletableMessage()}. Only the newest messages up to
+     * the deletion listener limit are loaded
+     */
+    public Message firstDeletableMessage() {
+        List<Message> newest = getMessagesWithOrder(DaoCore.ORDER_DESC, Math.max(1, ChatSDK.config().messageDeletionListenerLimit));
+        if (newest.isEmpty()) {
+            return null;
+        }
+        return newest.get(newest.size() - 1);
+    }
+
+    /**
+     * Deletes all of the thread's messages along with their meta values and read receipts
+     * without loading each message. Any archived messages are deleted too. Unlike
+     * {@link #removeMessage(Message)} no messageRemoved events are sent
+     */
+    public void removeAllMessages() {
+        daoSession.runInTx(() -> {
+            ChatSDK.db().deleteMessagesForThread(getId());
+            tailMessageId = null;
+            update();
+            resetMessages();
+            updateSummary();
+        });
+        if (ChatSDK.archive() != null) {
+            ChatSDK.archive().deleteArchive(this);
+        }
     }
 
     public int indexOf(Message message) {
@@ -847,6 +1155,22 @@ public class Thread extends AbstractEntity {
         update();
     }
 
+    public Long getMemberHash() {
+        return this.memberHash;
+    }
+
+    public void setMemberHash(Long memberHash) {
+        this.memberHash = memberHash;
+    }
+
+    public Long getTailMessageId() {
+        return this.tailMessageId;
+    }
+
+    public void setTailMessageId(Long tailMessageId) {
+        this.tailMessageId = tailMessageId;
+    }
+
     @Keep
     public boolean isReadOnly() {
         ThreadMetaValue value = metaValueForKey(Keys.ReadOnly);
@@ -34,6 +34,8 @@ public class ThreadDao extends AbstractDao<Thread, Long> {
         public final static Property Deleted = new Property(6, Boolean.class, "deleted", false, "DELETED");
         public final static Property Draft = new Property(7, String.class, "draft", false, "DRAFT");
         public final static Property CanDeleteMessagesFrom = new Property(8, java.util.Date.class, "canDeleteMessagesFrom", false, "CAN_DELETE_MESSAGES_FROM");
+        public final static Property MemberHash = new Property(9, Long.class, "memberHash", false, "MEMBER_HASH");
+        public final static Property TailMessageId = new Property(10, Long.class, "tailMessageId", false, "TAIL_MESSAGE_ID");
     }
 
     private DaoSession daoSession;
@@ -60,7 +62,12 @@ public class ThreadDao extends AbstractDao<Thread, Long> {
                 "\"LOAD_MESSAGES_FROM\" INTEGER," + // 5: loadMessagesFrom
                 "\"DELETED\" INTEGER," + // 6: deleted
                 "\"DRAFT\" TEXT," + // 7: draft
-                "\"CAN_DELETE_MESSAGES_FROM\" INTEGER);"); // 8: canDeleteMessagesFrom
+                "\"CAN_DELETE_MESSAGES_FROM\" INTEGER," + // 8: canDeleteMessagesFrom
+                "\"MEMBER_HASH\" INTEGER," + // 9: memberHash
+                "\"TAIL_MESSAGE_ID\" INTEGER);"); // 10: tailMessageId
+        // Add Indexes
+        db.execSQL("CREATE INDEX " + constraint + "IDX_THREAD_MEMBER_HASH ON \"THREAD\"" +
+                " (\"MEMBER_HASH\" ASC);");
     }
 
     /** Drops the underlying database table. */
@@ -117,6 +124,16 @@ public class ThreadDao extends AbstractDao<Thread, Long> {
         if (canDeleteMessagesFrom != null) {
             stmt.bindLong(9, canDeleteMessagesFrom.getTime());
         }
+ 
+        Long memberHash = entity.getMemberHash();
+        if (memberHash != null) {
+            stmt.bindLong(10, memberHash);
+        }
+ 
+        Long tailMessageId = entity.getTailMessageId();
+        if (tailMessageId != null) {
+            stmt.bindLong(11, tailMessageId);
+        }
     }
 
     @Override
@@ -167,6 +184,16 @@ public class ThreadDao extends AbstractDao<Thread, Long> {
         if (canDeleteMessagesFrom != null) {
             stmt.bindLong(9, canDeleteMessagesFrom.getTime());
         }
+ 
+        Long memberHash = entity.getMemberHash();
+        if (memberHash != null) {
+            stmt.bindLong(10, memberHash);
+        }
+ 
+        Long tailMessageId = entity.getTailMessageId();
+        if (tailMessageId != null) {
+            stmt.bindLong(11, tailMessageId);
+        }
     }
 
     @Override
@@ -191,7 +218,9 @@ public class ThreadDao extends AbstractDao<Thread, Long> {
             cursor.isNull(offset + 5) ? null : new java.util.Date(cursor.getLong(offset + 5)), // loadMessagesFrom
             cursor.isNull(offset + 6) ? null : cursor.getShort(offset + 6) != 0, // deleted
             cursor.isNull(offset + 7) ? null : cursor.getString(offset + 7), // draft
-            cursor.isNull(offset + 8) ? null : new java.util.Date(cursor.getLong(offset + 8)) // canDeleteMessagesFrom
+            cursor.isNull(offset + 8) ? null : new java.util.Date(cursor.getLong(offset + 8)), // canDeleteMessagesFrom
+            cursor.isNull(offset + 9) ? null : cursor.getLong(offset + 9), // memberHash
+            cursor.isNull(offset + 10) ? null : cursor.getLong(offset + 10) // tailMessageId
         );
         return entity;
     }
@@ -207,6 +236,8 @@ public class ThreadDao extends AbstractDao<Thread, Long> {
         entity.setDeleted(cursor.isNull(offset + 6) ? null : cursor.getShort(offset + 6) != 0);
         entity.setDraft(cursor.isNull(offset + 7) ? null : cursor.getString(offset + 7));
         entity.setCanDeleteMessagesFrom(cursor.isNull(offset + 8) ? null : new java.util.Date(cursor.getLong(offset + 8)));
+        entity.setMemberHash(cursor.isNull(offset + 9) ? null : cursor.getLong(offset + 9));
+        entity.setTailMessageId(cursor.isNull(offset + 10) ? null : cursor.getLong(offset + 10));
      }
     
     @Override
@@ -4,6 +4,7 @@ import org.greenrobot.greendao.DaoException;
 import org.greenrobot.greendao.annotation.Entity;
 import org.greenrobot.greendao.annotation.Generated;
 import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
 import org.greenrobot.greendao.annotation.ToOne;
 
 /**
@@ -23,6 +24,7 @@ public class ThreadMetaValue implements MetaValue<Object> {
     private Long longValue;
     private Float floatValue;
 
+    @Index
     private Long threadId;
 
     @ToOne(joinProperty = "threadId")
@@ -0,0 +1,92 @@
+package sdk.chat.core.dao;
+
+import org.greenrobot.greendao.annotation.Entity;
+import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Keep;
+import org.greenrobot.greendao.annotation.Unique;
+
+import java.util.Date;
+
+/**
+ * Denormalized per-thread values that are needed to display and sort the thread list.
+ * This row is kept up to date whenever a message is added, removed or read so that the
+ * list doesn't have to query the message table for each thread.
+ */
+@Entity
+public class ThreadSummary {
+
+    @Id
+    private Long id;
+
+    @Unique
+    private Long threadId;
+
+    private Long lastMessageId;
+    private Date lastMessageDate;
+    private Integer unreadCount;
+    private Long weight;
+
+    @Keep
+    public ThreadSummary(Long id, Long threadId, Long lastMessageId, Date lastMessageDate, Integer unreadCount,
+            Long weight) {
+        this.id = id;
+        this.threadId = threadId;
+        this.lastMessageId = lastMessageId;
+        this.lastMessageDate = lastMessageDate;
+        this.unreadCount = unreadCount;
+        this.weight = weight;
+    }
+
+    @Keep
+    public ThreadSummary() {
+    }
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getThreadId() {
+        return this.threadId;
+    }
+
+    public void setThreadId(Long threadId) {
+        this.threadId = threadId;
+    }
+
+    public Long getLastMessageId() {
+        return this.lastMessageId;
+    }
+
+    public void setLastMessageId(Long lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public Date getLastMessageDate() {
+        return this.lastMessageDate;
+    }
+
+    public void setLastMessageDate(Date lastMessageDate) {
+        this.lastMessageDate = lastMessageDate;
+    }
+
+    public Integer getUnreadCount() {
+        return this.unreadCount;
+    }
+
+    public void setUnreadCount(Integer unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public Long getWeight() {
+        return this.weight;
+    }
+
+    public void setWeight(Long weight) {
+        this.weight = weight;
+    }
+
+}
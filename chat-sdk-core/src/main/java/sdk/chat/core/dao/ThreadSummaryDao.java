@@ -0,0 +1,183 @@
+package sdk.chat.core.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import org.greenrobot.greendao.AbstractDao;
+import org.greenrobot.greendao.Property;
+import org.greenrobot.greendao.internal.DaoConfig;
+import org.greenrobot.greendao.database.Database;
+import org.greenrobot.greendao.database.DatabaseStatement;
+
+// THIS CODE IS GENERATED BY greenDAO, DO NOT EDIT.
+/** 
+ * DAO for table "THREAD_SUMMARY".
+*/
+public class ThreadSummaryDao extends AbstractDao<ThreadSummary, Long> {
+
+    public static final String TABLENAME = "THREAD_SUMMARY";
+
+    /**
+     * Properties of entity ThreadSummary.<br/>
+     * Can be used for QueryBuilder and for referencing column names.
+     */
+    public static class Properties {
+        public final static Property Id = new Property(0, Long.class, "id", true, "_id");
+        public final static Property ThreadId = new Property(1, Long.class, "threadId", false, "THREAD_ID");
+        public final static Property LastMessageId = new Property(2, Long.class, "lastMessageId", false, "LAST_MESSAGE_ID");
+        public final static Property LastMessageDate = new Property(3, java.util.Date.class, "lastMessageDate", false, "LAST_MESSAGE_DATE");
+        public final static Property UnreadCount = new Property(4, Integer.class, "unreadCount", false, "UNREAD_COUNT");
+        public final static Property Weight = new Property(5, Long.class, "weight", false, "WEIGHT");
+    }
+
+
+    public ThreadSummaryDao(DaoConfig config) {
+        super(config);
+    }
+    
+    public ThreadSummaryDao(DaoConfig config, DaoSession daoSession) {
+        super(config, daoSession);
+    }
+
+    /** Creates the underlying database table. */
+    public static void createTable(Database db, boolean ifNotExists) {
+        String constraint = ifNotExists? "IF NOT EXISTS ": "";
+        db.execSQL("CREATE TABLE " + constraint + "\"THREAD_SUMMARY\" (" + //
+                "\"_id\" INTEGER PRIMARY KEY ," + // 0: id
+                "\"THREAD_ID\" INTEGER UNIQUE ," + // 1: threadId
+                "\"LAST_MESSAGE_ID\" INTEGER," + // 2: lastMessageId
+                "\"LAST_MESSAGE_DATE\" INTEGER," + // 3: lastMessageDate
+                "\"UNREAD_COUNT\" INTEGER," + // 4: unreadCount
+                "\"WEIGHT\" INTEGER);"); // 5: weight
+    }
+
+    /** Drops the underlying database table. */
+    public static void dropTable(Database db, boolean ifExists) {
+        String sql = "DROP TABLE " + (ifExists ? "IF EXISTS " : "") + "\"THREAD_SUMMARY\"";
+        db.execSQL(sql);
+    }
+
+    @Override
+    protected final void bindValues(DatabaseStatement stmt, ThreadSummary entity) {
+        stmt.clearBindings();
+ 
+        Long id = entity.getId();
+        if (id != null) {
+            stmt.bindLong(1, id);
+        }
+ 
+        Long threadId = entity.getThreadId();
+        if (threadId != null) {
+            stmt.bindLong(2, threadId);
+        }
+ 
+        Long lastMessageId = entity.getLastMessageId();
+        if (lastMessageId != null) {
+            stmt.bindLong(3, lastMessageId);
+        }
+ 
+        java.util.Date lastMessageDate = entity.getLastMessageDate();
+        if (lastMessageDate != null) {
+            stmt.bindLong(4, lastMessageDate.getTime());
+        }
+ 
+        Integer unreadCount = entity.getUnreadCount();
+        if (unreadCount != null) {
+            stmt.bindLong(5, unreadCount);
+        }
+ 
+        Long weight = entity.getWeight();
+        if (weight != null) {
+            stmt.bindLong(6, weight);
+        }
+    }
+
+    @Override
+    protected final void bindValues(SQLiteStatement stmt, ThreadSummary entity) {
+        stmt.clearBindings();
+ 
+        Long id = entity.getId();
+        if (id != null) {
+            stmt.bindLong(1, id);
+        }
+ 
+        Long threadId = entity.getThreadId();
+        if (threadId != null) {
+            stmt.bindLong(2, threadId);
+        }
+ 
+        Long lastMessageId = entity.getLastMessageId();
+        if (lastMessageId != null) {
+            stmt.bindLong(3, lastMessageId);
+        }
+ 
+        java.util.Date lastMessageDate = entity.getLastMessageDate();
+        if (lastMessageDate != null) {
+            stmt.bindLong(4, lastMessageDate.getTime());
+        }
+ 
+        Integer unreadCount = entity.getUnreadCount();
+        if (unreadCount != null) {
+            stmt.bindLong(5, unreadCount);
+        }
+ 
+        Long weight = entity.getWeight();
+        if (weight != null) {
+            stmt.bindLong(6, weight);
+        }
+    }
+
+    @Override
+    public Long readKey(Cursor cursor, int offset) {
+        return cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0);
+    }    
+
+    @Override
+    public ThreadSummary readEntity(Cursor cursor, int offset) {
+        ThreadSummary entity = new ThreadSummary( //
+            cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0), // id
+            cursor.isNull(offset + 1) ? null : cursor.getLong(offset + 1), // threadId
+            cursor.isNull(offset + 2) ? null : cursor.getLong(offset + 2), // lastMessageId
+            cursor.isNull(offset + 3) ? null : new java.util.Date(cursor.getLong(offset + 3)), // lastMessageDate
+            cursor.isNull(offset + 4) ? null : cursor.getInt(offset + 4), // unreadCount
+            cursor.isNull(offset + 5) ? null : cursor.getLong(offset + 5) // weight
+        );
+        return entity;
+    }
+     
+    @Override
+    public void readEntity(Cursor cursor, ThreadSummary entity, int offset) {
+        entity.setId(cursor.isNull(offset + 0) ? null : cursor.getLong(offset + 0));
+        entity.setThreadId(cursor.isNull(offset + 1) ? null : cursor.getLong(offset + 1));
+        entity.setLastMessageId(cursor.isNull(offset + 2) ? null : cursor.getLong(offset + 2));
+        entity.setLastMessageDate(cursor.isNull(offset + 3) ? null : new java.util.Date(cursor.getLong(offset + 3)));
+        entity.setUnreadCount(cursor.isNull(offset + 4) ? null : cursor.getInt(offset + 4));
+        entity.setWeight(cursor.isNull(offset + 5) ? null : cursor.getLong(offset + 5));
+     }
+    
+    @Override
+    protected final Long updateKeyAfterInsert(ThreadSummary entity, long rowId) {
+        entity.setId(rowId);
+        return rowId;
+    }
+    
+    @Override
+    public Long getKey(ThreadSummary entity) {
+        if(entity != null) {
+            return entity.getId();
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean hasKey(ThreadSummary entity) {
+        return entity.getId() != null;
+    }
+
+    @Override
+    protected final boolean isEntityUpdateable() {
+        return true;
+    }
+    
+}
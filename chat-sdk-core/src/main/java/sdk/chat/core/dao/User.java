@@ -36,6 +36,10 @@ public class User extends AbstractEntity implements UserListItem {
 
     @ToMany(referencedJoinProperty = "userId")
     private List<UserMetaValue> metaValues;
+
+    // Meta values by key. Rebuilt when the meta values are changed or reloaded
+    private transient Map<String, String> metaValuesByKey;
+    private transient List<UserMetaValue> metaValuesByKeySource;
     
     /** Used to resolve relations */
     @Generated(hash = 2040040024)
@@ -315,11 +319,12 @@ public class User extends AbstractEntity implements UserListItem {
     }
 
     public String metaStringForKey(String key) {
-        return metaMap().get(key);
+        return metaValuesByKey().get(key);
     }
 
     public Boolean metaBooleanForKey(String key) {
-        return metaValueForKey(key) != null && metaValueForKey(key).getValue().toLowerCase().equals("true");
+        String value = metaStringForKey(key);
+        return value != null && value.equalsIgnoreCase("true");
     }
 
     public void setMetaString(String key, String value) {
@@ -352,13 +357,24 @@ public class User extends AbstractEntity implements UserListItem {
      * Converting the metaData json to a map object
      **/
     public Map<String, String> metaMap() {
-        HashMap<String, String> map = new HashMap<>();
+        return new HashMap<>(metaValuesByKey());
+    }
 
-        for(UserMetaValue v : getMetaValues()) {
-            map.put(v.getKey(), v.getValue());
+    protected synchronized Map<String, String> metaValuesByKey() {
+        List<UserMetaValue> values = getMetaValues();
+        if (metaValuesByKey == null || metaValuesByKeySource != values) {
+            Map<String, String> map = new HashMap<>();
+            for(UserMetaValue v : values) {
+                map.put(v.getKey(), v.getValue());
+            }
+            metaValuesByKey = map;
+            metaValuesByKeySource = values;
         }
+        return metaValuesByKey;
+    }
 
-        return map;
+    protected synchronized void clearMetaValuesByKey() {
+        metaValuesByKey = null;
     }
 
     public void setMetaValue(String key, String value) {
@@ -381,6 +397,7 @@ public class User extends AbstractEntity implements UserListItem {
                 metaValue.setKey(key);
 
                 metaValue.update();
+                clearMetaValuesByKey();
                 update();
 
                 if (notify) {
@@ -519,6 +536,16 @@ public class User extends AbstractEntity implements UserListItem {
         metaValues = null;
     }
 
+    /**
+     * Set the meta values from a list that was loaded in bulk. If they have already been
+     * resolved they're left as they are
+     */
+    public synchronized void setPrefetchedMetaValues(List<UserMetaValue> metaValues) {
+        if (this.metaValues == null) {
+            this.metaValues = metaValues;
+        }
+    }
+
     public void setIsOnline(Boolean isOnline) {
         setIsOnline(isOnline, true);
     }
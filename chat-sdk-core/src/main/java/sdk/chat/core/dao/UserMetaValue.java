@@ -4,6 +4,7 @@ import org.greenrobot.greendao.DaoException;
 import org.greenrobot.greendao.annotation.Entity;
 import org.greenrobot.greendao.annotation.Generated;
 import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
 import org.greenrobot.greendao.annotation.ToOne;
 
 /**
@@ -19,6 +20,7 @@ public class UserMetaValue implements MetaValue<String> {
     private String key;
     private String value;
 
+    @Index
     private Long userId;
 
     @ToOne(joinProperty = "userId")
@@ -8,6 +8,7 @@ import org.greenrobot.greendao.DaoException;
 import org.greenrobot.greendao.annotation.Entity;
 import org.greenrobot.greendao.annotation.Generated;
 import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
 import org.greenrobot.greendao.annotation.JoinEntity;
 import org.greenrobot.greendao.annotation.Keep;
 import org.greenrobot.greendao.annotation.ToMany;
@@ -25,7 +26,9 @@ public class UserThreadLink {
 
     @Id
     private Long id;
+    @Index
     private Long userId;
+    @Index
     private Long threadId;
 
     @ToMany(referencedJoinProperty = "userThreadLinkId")
@@ -2,6 +2,7 @@ package sdk.chat.core.dao;
 
 import org.greenrobot.greendao.annotation.Entity;
 import org.greenrobot.greendao.annotation.Id;
+import org.greenrobot.greendao.annotation.Index;
 import org.greenrobot.greendao.annotation.ToOne;
 import org.greenrobot.greendao.annotation.Generated;
 import org.greenrobot.greendao.DaoException;
@@ -14,6 +15,7 @@ public class UserThreadLinkMetaValue implements MetaValue<String> {
     private String key;
     private String value;
 
+    @Index
     private Long userThreadLinkId;
 
     @ToOne(joinProperty = "userThreadLinkId")
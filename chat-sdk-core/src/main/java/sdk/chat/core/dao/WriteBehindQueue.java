@@ -0,0 +1,197 @@
+package sdk.chat.core.dao;
+
+import org.greenrobot.greendao.async.AsyncOperation;
+import org.greenrobot.greendao.async.AsyncOperationListener;
+import org.greenrobot.greendao.async.AsyncSession;
+import org.pmw.tinylog.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sdk.chat.core.session.ChatSDK;
+import sdk.chat.core.utils.AppBackgroundMonitor;
+import sdk.guru.common.RX;
+
+/**
+ * Delays entity updates for a short window so that several updates to the same entity are
+ * written once. This is useful for values that change many times in quick succession like
+ * a message's send status. The latest state of the entity is written when the window ends.
+ *
+ * Disabled unless {@link sdk.chat.core.session.Config#writeBehindWindowMillis} is set, in
+ * which case updates are written immediately. Pending updates are flushed when the app
+ * goes into the background. Entities loaded by id come from the identity scope so they
+ * always reflect the pending changes but SQL queries only see them once they're flushed.
+ */
+public class WriteBehindQueue implements AppBackgroundMonitor.Listener, AsyncOperationListener {
+
+    protected final DaoSession daoSession;
+    protected final AsyncSession asyncSession;
+
+    // Entity to the time its first pending update was requested
+    protected final Map<Object, Long> pending = new LinkedHashMap<>();
+    protected boolean flushScheduled = false;
+
+    // Flush operation to the time its oldest update was requested
+    protected final Map<AsyncOperation, Long> operations = new ConcurrentHashMap<>();
+
+    protected final AtomicLong requestedCount = new AtomicLong();
+    protected final AtomicLong writtenCount = new AtomicLong();
+    protected final AtomicLong flushCount = new AtomicLong();
+    protected final AtomicLong totalLatencyNanos = new AtomicLong();
+    protected final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public WriteBehindQueue(DaoSession daoSession) {
+        this.daoSession = daoSession;
+        this.asyncSession = daoSession.startAsyncSession();
+        this.asyncSession.setListener(this);
+    }
+
+    public boolean isEnabled() {
+        return ChatSDK.config().writeBehindWindowMillis > 0;
+    }
+
+    /**
+     * Update the entity when the window ends. If there's already an update pending for it,
+     * the two are combined
+     */
+    public void update(Object entity) {
+        if (entity == null) {
+            return;
+        }
+        if (!isEnabled()) {
+            daoSession.update(entity);
+            return;
+        }
+
+        requestedCount.incrementAndGet();
+        synchronized (pending) {
+            if (!pending.containsKey(entity)) {
+                pending.put(entity, System.nanoTime());
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                RX.dbWrite().scheduleDirect(this::flush, ChatSDK.config().writeBehindWindowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Write the pending updates now. Each entity class is written in one transaction
+     */
+    @SuppressWarnings("unchecked")
+    public void flush() {
+        Map<Class<?>, List<Object>> batches = new LinkedHashMap<>();
+        long oldest = Long.MAX_VALUE;
+
+        synchronized (pending) {
+            flushScheduled = false;
+            for (Map.Entry<Object, Long> entry : pending.entrySet()) {
+                Class<?> c = entry.getKey().getClass();
+                List<Object> batch = batches.get(c);
+                if (batch == null) {
+                    batch = new ArrayList<>();
+                    batches.put(c, batch);
+                }
+                batch.add(entry.getKey());
+                oldest = Math.min(oldest, entry.getValue());
+            }
+            pending.clear();
+        }
+
+        for (Map.Entry<Class<?>, List<Object>> entry : batches.entrySet()) {
+            AsyncOperation operation = asyncSession.updateInTx((Class<Object>) entry.getKey(), entry.getValue());
+            operations.put(operation, oldest);
+            writtenCount.addAndGet(entry.getValue().size());
+        }
+    }
+
+    /**
+     * Flush and wait until the updates have been written
+     */
+    public void flushAndWait() {
+        flush();
+        asyncSession.waitForCompletion();
+    }
+
+    @Override
+    public void onAsyncOperationCompleted(AsyncOperation operation) {
+        Long requested = operations.remove(operation);
+        if (operation.isFailed()) {
+            Logger.error(operation.getThrowable(), "Write behind update failed");
+        }
+        if (requested != null) {
+            long latency = System.nanoTime() - requested;
+            flushCount.incrementAndGet();
+            totalLatencyNanos.addAndGet(latency);
+            long max;
+            do {
+                max = maxLatencyNanos.get();
+            } while (latency > max && !maxLatencyNanos.compareAndSet(max, latency));
+        }
+    }
+
+    @Override
+    public void didStart() {
+
+    }
+
+    @Override
+    public void didStop() {
+        flush();
+    }
+
+    /**
+     * @return number of entities waiting to be written
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    public long getRequestedCount() {
+        return requestedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * @return number of updates that were combined with another update to the same entity
+     */
+    public long getCoalescedCount() {
+        return Math.max(0, requestedCount.get() - writtenCount.get() - getPendingCount());
+    }
+
+    /**
+     * @return average time between an update being requested and it being written
+     */
+    public long getAverageFlushLatencyMillis() {
+        long count = flushCount.get();
+        return count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos.get() / count) : 0;
+    }
+
+    public long getMaxFlushLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get());
+    }
+
+    public void resetCounts() {
+        requestedCount.set(0);
+        writtenCount.set(0);
+        flushCount.set(0);
+        totalLatencyNanos.set(0);
+        maxLatencyNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("pending: %s, requested: %s, written: %s, coalesced: %s, average latency: %sms, max latency: %sms",
+                getPendingCount(), getRequestedCount(), getWrittenCount(), getCoalescedCount(), getAverageFlushLatencyMillis(), getMaxFlushLatencyMillis());
+    }
+}
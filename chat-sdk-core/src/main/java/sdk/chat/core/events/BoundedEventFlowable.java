@@ -0,0 +1,190 @@
+package sdk.chat.core.events;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.internal.util.BackpressureHelper;
+
+/**
+ * Delivers events on a scheduler through a queue with a fixed capacity. Each subscriber
+ * has its own queue, so a slow subscriber loses or combines events according to its
+ * {@link EventOverflowPolicy} rather than holding an unbounded backlog in memory the way
+ * observeOn does. Events are only delivered when the subscriber has requested them.
+ */
+public class BoundedEventFlowable extends Flowable<NetworkEvent> {
+
+    protected final Observable<NetworkEvent> source;
+    protected final EventOverflowPolicy policy;
+    protected final Scheduler scheduler;
+    protected final EventOverflowMetrics metrics;
+
+    public BoundedEventFlowable(Observable<NetworkEvent> source, EventOverflowPolicy policy, Scheduler scheduler, EventOverflowMetrics metrics) {
+        this.source = source;
+        this.policy = policy;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super NetworkEvent> subscriber) {
+        QueueSubscription subscription = new QueueSubscription(subscriber, new EventQueue(policy, metrics), scheduler.createWorker());
+        subscriber.onSubscribe(subscription);
+        subscription.connect(source);
+    }
+
+    protected static class QueueSubscription implements Subscription, Runnable {
+
+        final Subscriber<? super NetworkEvent> downstream;
+        final EventQueue queue;
+        final Scheduler.Worker worker;
+
+        final AtomicLong requested = new AtomicLong();
+        final AtomicInteger wip = new AtomicInteger();
+
+        volatile boolean cancelled;
+        Disposable upstream;
+
+        QueueSubscription(Subscriber<? super NetworkEvent> downstream, EventQueue queue, Scheduler.Worker worker) {
+            this.downstream = downstream;
+            this.queue = queue;
+            this.worker = worker;
+        }
+
+        void connect(Observable<NetworkEvent> source) {
+            if (cancelled) {
+                return;
+            }
+            upstream = source.subscribe(event -> {
+                queue.offer(event);
+                schedule();
+            });
+            if (cancelled) {
+                upstream.dispose();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n > 0) {
+                BackpressureHelper.add(requested, n);
+                schedule();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (upstream != null) {
+                upstream.dispose();
+            }
+            worker.dispose();
+            queue.clear();
+        }
+
+        void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                worker.schedule(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            for (;;) {
+                long r = requested.get();
+                long emitted = 0;
+                while (emitted != r) {
+                    if (cancelled) {
+                        return;
+                    }
+                    NetworkEvent event = queue.poll();
+                    if (event == null) {
+                        break;
+                    }
+                    downstream.onNext(event);
+                    emitted++;
+                }
+                if (emitted != 0) {
+                    BackpressureHelper.produced(requested, emitted);
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+    }
+
+    protected static class EventQueue {
+
+        final EventOverflowPolicy policy;
+        final EventOverflowMetrics metrics;
+
+        // Guarded by this
+        final ArrayDeque<NetworkEvent> deque = new ArrayDeque<>();
+        final LinkedHashMap<EventBatcher.Key, NetworkEvent> latest = new LinkedHashMap<>();
+
+        EventQueue(EventOverflowPolicy policy, EventOverflowMetrics metrics) {
+            this.policy = policy;
+            this.metrics = metrics;
+        }
+
+        synchronized void offer(NetworkEvent event) {
+            if (policy.strategy == EventOverflowPolicy.Strategy.LatestPerKey) {
+                EventBatcher.Key key = new EventBatcher.Key(event);
+                if (latest.containsKey(key)) {
+                    // The replacement keeps the queue position of the original
+                    latest.put(key, event);
+                    metrics.coalesced(event.type);
+                    return;
+                }
+                if (latest.size() >= policy.capacity) {
+                    Iterator<Map.Entry<EventBatcher.Key, NetworkEvent>> iterator = latest.entrySet().iterator();
+                    metrics.dropped(iterator.next().getValue().type);
+                    iterator.remove();
+                }
+                latest.put(key, event);
+            }
+            else if (deque.size() >= policy.capacity) {
+                if (policy.strategy == EventOverflowPolicy.Strategy.DropOldest) {
+                    metrics.dropped(deque.pollFirst().type);
+                    deque.offerLast(event);
+                } else {
+                    metrics.dropped(event.type);
+                }
+            }
+            else {
+                deque.offerLast(event);
+            }
+        }
+
+        synchronized NetworkEvent poll() {
+            if (policy.strategy == EventOverflowPolicy.Strategy.LatestPerKey) {
+                Iterator<NetworkEvent> iterator = latest.values().iterator();
+                if (iterator.hasNext()) {
+                    NetworkEvent event = iterator.next();
+                    iterator.remove();
+                    return event;
+                }
+                return null;
+            }
+            return deque.pollFirst();
+        }
+
+        synchronized void clear() {
+            deque.clear();
+            latest.clear();
+        }
+    }
+}
@@ -1,61 +1,144 @@
 package sdk.chat.core.events;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.reactivex.Observable;
-import sdk.chat.core.session.ChatSDK;
-import sdk.guru.common.DisposableMap;
-import sdk.guru.common.RX;
-
-public class EventBatcher {
-//
-//    public Map<EventType, List<NetworkEvent>> eventMap = new HashMap<>();
-//    protected DisposableMap dm = new DisposableMap();
-//
-//    public EventBatcher() {
-//        // Capture the events as they are emitted
-//        dm.add(ChatSDK.events().source().subscribe(networkEvent -> {
-//            addEvent(networkEvent);
-//        }));
-//        dm.add(Observable.interval(1, TimeUnit.SECONDS).observeOn(RX.computation()).subscribe(aLong -> {
-//
-//        }));
-//    }
-//
-//    protected void addEvent(NetworkEvent event) {
-//        List<NetworkEvent> list = eventMap.get(event.type);
-//        if (list == null) {
-//            list = new ArrayList<>();
-//            eventMap.put(event.type, list);
-//        }
-//        list.add(event);
-//    }
-//
-//    protected void processBatch() {
-//        Map<EventType, NetworkEvent> batch = new HashMap<>(eventMap);
-//        eventMap.clear();
-//
-//        // Remove duplicates
-//        for (EventType type: eventMap.keySet()) {
-//            List<NetworkEvent> list = eventMap.get(type);
-//            if (list != null) {
-//                int size = list.size();
-//                NetworkEvent a;
-//                NetworkEvent b;
-//                for (int i = 0; i < size; i++) {
-//                    a = list.get(i);
-//                    for (int j = 0; j < size; j++) {
-//                        b = list.get(j);
-//
-//                    }
-//                }
-//            }
-//        }
-//
-//    }
+import io.reactivex.ObservableSource;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
 
+/**
+ * Collects events for a short window and emits them as one batch. Events of the same type
+ * for the same thread, message and user are combined so only the latest one is kept, in
+ * the position of the first. Send status events are only combined if the status is the
+ * same, so upload progress is combined but status changes aren't lost.
+ *
+ * During a sync this lets a screen redraw once per burst of messages rather than once per
+ * message.
+ *
+ * A batch is emitted when the window ends or when it reaches the maximum size.
+ */
+public class EventBatcher implements ObservableTransformer<NetworkEvent, List<NetworkEvent>> {
+
+    protected final long windowMillis;
+    protected final int maxSize;
+    protected final Scheduler scheduler;
+
+    protected final AtomicLong receivedCount = new AtomicLong();
+    protected final AtomicLong emittedCount = new AtomicLong();
+    protected final AtomicLong batchCount = new AtomicLong();
+
+    protected static class Key {
+
+        final EventType type;
+        final Object thread;
+        final Object message;
+        final Object user;
+        final Object status;
+
+        Key(NetworkEvent event) {
+            type = event.type;
+            // Use the fields directly so lazy relations aren't loaded
+            thread = event.thread != null ? id(event.thread.getId(), event.thread) : null;
+            message = event.message != null ? id(event.message.getId(), event.message) : null;
+            user = event.user != null ? id(event.user.getId(), event.user) : null;
+
+            // Upload progress updates are combined but each change of send status is kept
+            status = event.typeIs(EventType.MessageSendStatusUpdated) ? event.getMessageSendStatus() : null;
+        }
+
+        // Entities that haven't been saved don't have an id yet
+        static Object id(Long id, Object entity) {
+            return id != null ? id : entity;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return type == key.type && equal(thread, key.thread) && equal(message, key.message) && equal(user, key.user) && equal(status, key.status);
+        }
+
+        static boolean equal(Object a, Object b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type.hashCode();
+            result = 31 * result + (thread != null ? thread.hashCode() : 0);
+            result = 31 * result + (message != null ? message.hashCode() : 0);
+            result = 31 * result + (user != null ? user.hashCode() : 0);
+            result = 31 * result + (status != null ? status.hashCode() : 0);
+            return result;
+        }
+    }
+
+    public EventBatcher(long windowMillis, int maxSize, Scheduler scheduler) {
+        this.windowMillis = Math.max(1, windowMillis);
+        this.maxSize = Math.max(1, maxSize);
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public ObservableSource<List<NetworkEvent>> apply(Observable<NetworkEvent> upstream) {
+        return upstream
+                .buffer(windowMillis, TimeUnit.MILLISECONDS, scheduler, maxSize)
+                .filter(events -> !events.isEmpty())
+                .map(this::combine);
+    }
+
+    /**
+     * Remove events that are superseded by a later event with the same key
+     */
+    public List<NetworkEvent> combine(List<NetworkEvent> events) {
+        Map<Key, NetworkEvent> latest = new LinkedHashMap<>();
+        for (NetworkEvent event : events) {
+            latest.put(new Key(event), event);
+        }
+
+        receivedCount.addAndGet(events.size());
+        emittedCount.addAndGet(latest.size());
+        batchCount.incrementAndGet();
+
+        if (latest.size() == events.size()) {
+            return events;
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    public long getEmittedCount() {
+        return emittedCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * @return number of events that were combined with a later event
+     */
+    public long getCoalescedCount() {
+        return receivedCount.get() - emittedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("received: %s, emitted: %s, batches: %s, coalesced: %s",
+                getReceivedCount(), getEmittedCount(), getBatchCount(), getCoalescedCount());
+    }
 }
@@ -0,0 +1,198 @@
+package sdk.chat.core.events;
+
+import android.os.Looper;
+
+import org.pmw.tinylog.Logger;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableOperator;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Observer;
+import io.reactivex.disposables.Disposable;
+import sdk.guru.common.RX;
+
+/**
+ * Measures the event bus so UI jank during a sync can be traced back to the events that
+ * caused it. It records the number of events of each type, how long each named subscriber
+ * takes to handle an event and how long events take to reach the main thread.
+ *
+ * Disabled unless {@link sdk.chat.core.session.Config#eventInstrumentationEnabled} is set.
+ * Subscribers are measured by adding {@link #measure(String)} just before subscribing.
+ */
+public class EventInstrumentation {
+
+    protected final boolean enabled;
+
+    protected final AtomicLongArray eventCounts = new AtomicLongArray(EventType.values().length);
+    protected final Map<String, LatencyHistogram> handlingTimes = new ConcurrentHashMap<>();
+    protected final LatencyHistogram mainThreadLatency = new LatencyHistogram();
+
+    protected Disposable sourceDisposable;
+    protected Disposable logDisposable;
+
+    public static class Snapshot {
+
+        public final Map<EventType, Long> eventCounts;
+        public final Map<String, LatencyHistogram> handlingTimes;
+        public final LatencyHistogram mainThreadLatency;
+
+        public Snapshot(Map<EventType, Long> eventCounts, Map<String, LatencyHistogram> handlingTimes, LatencyHistogram mainThreadLatency) {
+            this.eventCounts = Collections.unmodifiableMap(eventCounts);
+            this.handlingTimes = Collections.unmodifiableMap(handlingTimes);
+            this.mainThreadLatency = mainThreadLatency;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("Events: ").append(eventCounts).append("\n");
+            builder.append("Emit to main thread: ").append(mainThreadLatency).append("\n");
+            for (Map.Entry<String, LatencyHistogram> entry : handlingTimes.entrySet()) {
+                builder.append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+            }
+            return builder.toString();
+        }
+    }
+
+    public EventInstrumentation(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start counting the events emitted by the source
+     * @param logIntervalSeconds log a snapshot this often or zero to disable
+     */
+    public void start(Observable<NetworkEvent> source, long logIntervalSeconds) {
+        if (!enabled || sourceDisposable != null) {
+            return;
+        }
+        sourceDisposable = source.subscribe(event -> eventCounts.incrementAndGet(event.type.ordinal()));
+        if (logIntervalSeconds > 0) {
+            logDisposable = Observable.interval(logIntervalSeconds, TimeUnit.SECONDS, RX.computation())
+                    .subscribe(aLong -> Logger.info("Event bus\n" + snapshot()));
+        }
+    }
+
+    public void stop() {
+        if (sourceDisposable != null) {
+            sourceDisposable.dispose();
+            sourceDisposable = null;
+        }
+        if (logDisposable != null) {
+            logDisposable.dispose();
+            logDisposable = null;
+        }
+    }
+
+    /**
+     * Record how long the subscriber takes to handle each event under this name. When the
+     * subscriber is on the main thread, the time since the event was created is also
+     * recorded
+     */
+    public ObservableTransformer<NetworkEvent, NetworkEvent> measure(final String name) {
+        if (!enabled) {
+            return upstream -> upstream;
+        }
+        return upstream -> upstream.lift(new MeasureOperator(histogram(name)));
+    }
+
+    /**
+     * Record the time between the event being created and it being handled on the main thread
+     */
+    public void recordMainThreadLatency(NetworkEvent event) {
+        mainThreadLatency.record(System.nanoTime() - event.getCreatedNanos());
+    }
+
+    protected LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = handlingTimes.get(name);
+        if (histogram == null) {
+            synchronized (handlingTimes) {
+                histogram = handlingTimes.get(name);
+                if (histogram == null) {
+                    histogram = new LatencyHistogram();
+                    handlingTimes.put(name, histogram);
+                }
+            }
+        }
+        return histogram;
+    }
+
+    public Snapshot snapshot() {
+        Map<EventType, Long> counts = new EnumMap<>(EventType.class);
+        for (EventType type : EventType.values()) {
+            long count = eventCounts.get(type.ordinal());
+            if (count > 0) {
+                counts.put(type, count);
+            }
+        }
+        Map<String, LatencyHistogram> times = new HashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : handlingTimes.entrySet()) {
+            times.put(entry.getKey(), entry.getValue().copy());
+        }
+        return new Snapshot(counts, times, mainThreadLatency.copy());
+    }
+
+    public void reset() {
+        for (int i = 0; i < eventCounts.length(); i++) {
+            eventCounts.set(i, 0);
+        }
+        for (LatencyHistogram histogram : handlingTimes.values()) {
+            histogram.reset();
+        }
+        mainThreadLatency.reset();
+    }
+
+    protected class MeasureOperator implements ObservableOperator<NetworkEvent, NetworkEvent> {
+
+        final LatencyHistogram histogram;
+
+        MeasureOperator(LatencyHistogram histogram) {
+            this.histogram = histogram;
+        }
+
+        @Override
+        public Observer<? super NetworkEvent> apply(Observer<? super NetworkEvent> downstream) {
+            return new Observer<NetworkEvent>() {
+                @Override
+                public void onSubscribe(Disposable d) {
+                    downstream.onSubscribe(d);
+                }
+
+                @Override
+                public void onNext(NetworkEvent event) {
+                    long start = System.nanoTime();
+                    if (Looper.myLooper() == Looper.getMainLooper()) {
+                        mainThreadLatency.record(start - event.getCreatedNanos());
+                    }
+                    try {
+                        downstream.onNext(event);
+                    } finally {
+                        histogram.record(System.nanoTime() - start);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable e) {
+                    downstream.onError(e);
+                }
+
+                @Override
+                public void onComplete() {
+                    downstream.onComplete();
+                }
+            };
+        }
+    }
+}
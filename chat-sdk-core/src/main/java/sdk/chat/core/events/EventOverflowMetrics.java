@@ -0,0 +1,61 @@
+package sdk.chat.core.events;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the events that bounded event streams dropped or combined, by event type.
+ */
+public class EventOverflowMetrics {
+
+    protected final AtomicLongArray dropped = new AtomicLongArray(EventType.values().length);
+    protected final AtomicLongArray coalesced = new AtomicLongArray(EventType.values().length);
+
+    public void dropped(EventType type) {
+        dropped.incrementAndGet(type.ordinal());
+    }
+
+    public void coalesced(EventType type) {
+        coalesced.incrementAndGet(type.ordinal());
+    }
+
+    public long getDroppedCount(EventType type) {
+        return dropped.get(type.ordinal());
+    }
+
+    public long getCoalescedCount(EventType type) {
+        return coalesced.get(type.ordinal());
+    }
+
+    public Map<EventType, Long> getDroppedCounts() {
+        return counts(dropped);
+    }
+
+    public Map<EventType, Long> getCoalescedCounts() {
+        return counts(coalesced);
+    }
+
+    protected Map<EventType, Long> counts(AtomicLongArray array) {
+        Map<EventType, Long> counts = new EnumMap<>(EventType.class);
+        for (EventType type : EventType.values()) {
+            long count = array.get(type.ordinal());
+            if (count > 0) {
+                counts.put(type, count);
+            }
+        }
+        return counts;
+    }
+
+    public void reset() {
+        for (int i = 0; i < dropped.length(); i++) {
+            dropped.set(i, 0);
+            coalesced.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "dropped: " + getDroppedCounts() + ", coalesced: " + getCoalescedCounts();
+    }
+}
@@ -0,0 +1,42 @@
+package sdk.chat.core.events;
+
+/**
+ * What an event stream does when its subscriber falls behind and the queue is full.
+ */
+public class EventOverflowPolicy {
+
+    public enum Strategy {
+        // Replace a queued event that has the same type, thread, message and user. If the
+        // queue is still full, drop the oldest event
+        LatestPerKey,
+        // Drop the oldest queued event
+        DropOldest,
+        // Drop the new event
+        Buffer,
+    }
+
+    public final Strategy strategy;
+    public final int capacity;
+
+    public EventOverflowPolicy(Strategy strategy, int capacity) {
+        this.strategy = strategy;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public static EventOverflowPolicy latestPerKey(int capacity) {
+        return new EventOverflowPolicy(Strategy.LatestPerKey, capacity);
+    }
+
+    public static EventOverflowPolicy dropOldest(int capacity) {
+        return new EventOverflowPolicy(Strategy.DropOldest, capacity);
+    }
+
+    public static EventOverflowPolicy buffer(int capacity) {
+        return new EventOverflowPolicy(Strategy.Buffer, capacity);
+    }
+
+    @Override
+    public String toString() {
+        return strategy + " (" + capacity + ")";
+    }
+}
@@ -0,0 +1,142 @@
+package sdk.chat.core.events;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.functions.Consumer;
+import sdk.chat.core.dao.Thread;
+import sdk.chat.core.dao.User;
+
+/**
+ * Delivers events only to the subscribers that are interested in the event's thread or
+ * user. Subscribers are indexed by entity ID so the cost of an event depends on how many
+ * subscribers are listening to that entity rather than on the total number of subscribers.
+ *
+ * Events are delivered on the thread they were emitted on.
+ */
+public class EventRouter implements Consumer<NetworkEvent> {
+
+    protected static class Route {
+
+        final EnumSet<EventType> types;
+        final ObservableEmitter<NetworkEvent> emitter;
+
+        Route(EnumSet<EventType> types, ObservableEmitter<NetworkEvent> emitter) {
+            this.types = types;
+            this.emitter = emitter;
+        }
+
+        void deliver(NetworkEvent event) {
+            if (types.contains(event.type) && !emitter.isDisposed()) {
+                emitter.onNext(event);
+            }
+        }
+    }
+
+    // Lists are replaced rather than modified so they can be read without a lock
+    protected final Map<String, List<Route>> threadRoutes = new ConcurrentHashMap<>();
+    protected final Map<String, List<Route>> userRoutes = new ConcurrentHashMap<>();
+
+    /**
+     * Events for the thread with this entity ID
+     * @param types event types to deliver or none for every type
+     */
+    public Observable<NetworkEvent> forThread(String entityID, EventType... types) {
+        return route(threadRoutes, entityID, types);
+    }
+
+    /**
+     * Events for the user with this entity ID
+     * @param types event types to deliver or none for every type
+     */
+    public Observable<NetworkEvent> forUser(String entityID, EventType... types) {
+        return route(userRoutes, entityID, types);
+    }
+
+    protected Observable<NetworkEvent> route(Map<String, List<Route>> routes, String entityID, EventType... types) {
+        final EnumSet<EventType> set = types.length > 0 ? EnumSet.noneOf(EventType.class) : EnumSet.allOf(EventType.class);
+        Collections.addAll(set, types);
+
+        return Observable.create(emitter -> {
+            if (entityID == null) {
+                return;
+            }
+            Route route = new Route(set, emitter);
+            add(routes, entityID, route);
+            emitter.setCancellable(() -> remove(routes, entityID, route));
+        });
+    }
+
+    protected void add(Map<String, List<Route>> routes, String entityID, Route route) {
+        synchronized (routes) {
+            List<Route> list = routes.get(entityID);
+            List<Route> updated = list != null ? new ArrayList<>(list) : new ArrayList<>();
+            updated.add(route);
+            routes.put(entityID, updated);
+        }
+    }
+
+    protected void remove(Map<String, List<Route>> routes, String entityID, Route route) {
+        synchronized (routes) {
+            List<Route> list = routes.get(entityID);
+            if (list != null) {
+                List<Route> updated = new ArrayList<>(list);
+                updated.remove(route);
+                if (updated.isEmpty()) {
+                    routes.remove(entityID);
+                } else {
+                    routes.put(entityID, updated);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void accept(NetworkEvent event) {
+        if (!threadRoutes.isEmpty()) {
+            Thread thread = event.getThread();
+            if (thread != null) {
+                deliver(threadRoutes, thread.getEntityID(), event);
+            }
+        }
+        if (!userRoutes.isEmpty()) {
+            User user = event.getUser();
+            if (user != null) {
+                deliver(userRoutes, user.getEntityID(), event);
+            }
+        }
+    }
+
+    protected void deliver(Map<String, List<Route>> routes, String entityID, NetworkEvent event) {
+        if (entityID == null) {
+            return;
+        }
+        List<Route> list = routes.get(entityID);
+        if (list != null) {
+            for (Route route : list) {
+                route.deliver(event);
+            }
+        }
+    }
+
+    /**
+     * @return number of subscribers listening to threads and users
+     */
+    public int getRouteCount() {
+        int count = 0;
+        for (List<Route> list : threadRoutes.values()) {
+            count += list.size();
+        }
+        for (List<Route> list : userRoutes.values()) {
+            count += list.size();
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,97 @@
+package sdk.chat.core.events;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations. Bucket n holds durations of less than 2^n
+ * microseconds so percentiles are accurate to within a factor of two.
+ */
+public class LatencyHistogram {
+
+    // The last bucket holds everything over about 17 seconds
+    protected static final int Buckets = 25;
+
+    protected final AtomicLongArray buckets = new AtomicLongArray(Buckets);
+    protected final AtomicLong count = new AtomicLong();
+    protected final AtomicLong totalNanos = new AtomicLong();
+    protected final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        nanos = Math.max(0, nanos);
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = Math.min(Buckets - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        long max;
+        do {
+            max = maxNanos.get();
+        } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getAverageMillis() {
+        long count = this.count.get();
+        return count > 0 ? totalNanos.get() / (count * 1e6) : 0;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound of the bucket that contains the percentile, or the maximum if
+     * that is lower
+     */
+    public double getPercentileMillis(double percentile) {
+        long count = this.count.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < Buckets; i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(1, target)) {
+                // The last bucket has no upper bound
+                return i < Buckets - 1 ? Math.min((1L << i) / 1e3, getMaxMillis()) : getMaxMillis();
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * @return a copy that won't change as more durations are recorded
+     */
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        for (int i = 0; i < Buckets; i++) {
+            copy.buckets.set(i, buckets.get(i));
+        }
+        copy.count.set(count.get());
+        copy.totalNanos.set(totalNanos.get());
+        copy.maxNanos.set(maxNanos.get());
+        return copy;
+    }
+
+    public void reset() {
+        for (int i = 0; i < Buckets; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count: %s, avg: %.2fms, p50: %.2fms, p95: %.2fms, p99: %.2fms, max: %.2fms",
+                getCount(), getAverageMillis(), getPercentileMillis(50), getPercentileMillis(95), getPercentileMillis(99), getMaxMillis());
+    }
+}
@@ -12,6 +12,8 @@ import sdk.chat.core.dao.User;
 import sdk.chat.core.interfaces.ThreadType;
 import sdk.chat.core.session.ChatSDK;
 import sdk.chat.core.types.MessageSendProgress;
+import sdk.chat.core.types.MessageSendStatus;
+import sdk.chat.core.types.Progress;
 import io.reactivex.functions.Predicate;
 
 /**
@@ -27,6 +29,15 @@ public class NetworkEvent {
     protected String text;
     protected HashMap<String, Object> data;
 
+    // Send status events carry these directly rather than in the data map. The progress
+    // object is only created if a subscriber asks for it
+    protected MessageSendStatus sendStatus;
+    protected Progress uploadProgress;
+    protected volatile MessageSendProgress messageSendProgress;
+
+    // Used to measure how long the event takes to be handled
+    protected final long createdNanos = System.nanoTime();
+
     public static String MessageSendProgress = "MessageSendProgress";
     public Location location;
 
@@ -59,9 +70,20 @@ public class NetworkEvent {
     }
 
     public static NetworkEvent messageSendStatusChanged(MessageSendProgress progress) {
-        HashMap<String, Object> data = new HashMap<>();
-        data.put(MessageSendProgress, progress);
-        return new NetworkEvent(EventType.MessageSendStatusUpdated, progress.message.getThread(), progress.message, progress.message.getSender(), data);
+        NetworkEvent event = messageSendStatusChanged(progress.message, progress.status, progress.uploadProgress);
+        event.messageSendProgress = progress;
+        return event;
+    }
+
+    /**
+     * The status is copied when the event is created because the message's status can
+     * change again before the event is handled
+     */
+    public static NetworkEvent messageSendStatusChanged(Message message, MessageSendStatus status, Progress progress) {
+        NetworkEvent event = new NetworkEvent(EventType.MessageSendStatusUpdated, message.getThread(), message, message.getSender());
+        event.sendStatus = status;
+        event.uploadProgress = progress;
+        return event;
     }
 
     public static NetworkEvent threadRemoved(Thread thread) {
@@ -307,12 +329,34 @@ public class NetworkEvent {
     }
 
     public MessageSendProgress getMessageSendProgress() {
+        if (messageSendProgress == null && message != null && sendStatus != null) {
+            messageSendProgress = new MessageSendProgress(message, sendStatus, uploadProgress);
+        }
+        if (messageSendProgress != null) {
+            return messageSendProgress;
+        }
         if (data != null && data.containsKey(MessageSendProgress)) {
             return (MessageSendProgress) data.get(MessageSendProgress);
         }
         return null;
     }
 
+    public MessageSendStatus getMessageSendStatus() {
+        if (sendStatus != null) {
+            return sendStatus;
+        }
+        MessageSendProgress progress = getMessageSendProgress();
+        return progress != null ? progress.status : null;
+    }
+
+    public Progress getUploadProgress() {
+        if (sendStatus != null) {
+            return uploadProgress;
+        }
+        MessageSendProgress progress = getMessageSendProgress();
+        return progress != null ? progress.uploadProgress : null;
+    }
+
     public boolean typeIs(EventType... types) {
         for (EventType type: types) {
             if (this.type == type) {
@@ -358,7 +402,16 @@ public class NetworkEvent {
         return text;
     }
 
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
     public HashMap<String, Object> getData() {
+        // Send status events don't create the map unless it's needed
+        if (data == null && sendStatus != null) {
+            data = new HashMap<>();
+            data.put(MessageSendProgress, getMessageSendProgress());
+        }
         return data;
     }
 
@@ -2,10 +2,17 @@ package sdk.chat.core.handlers;
 
 import com.jakewharton.rxrelay2.PublishRelay;
 
+import java.util.List;
+
 import io.reactivex.CompletableObserver;
+import io.reactivex.Flowable;
 import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Consumer;
+import sdk.chat.core.events.EventOverflowPolicy;
+import sdk.chat.core.events.EventType;
 import sdk.chat.core.events.NetworkEvent;
 
 
@@ -18,6 +25,13 @@ public interface EventHandler extends Consumer<Throwable>, CompletableObserver {
     PublishRelay<NetworkEvent> source();
     Observable<NetworkEvent> sourceOnMain();
     Observable<NetworkEvent> sourceOnBackground();
+    Observable<NetworkEvent> forThread(String entityID, EventType... types);
+    Observable<NetworkEvent> forUser(String entityID, EventType... types);
+    ObservableTransformer<NetworkEvent, NetworkEvent> measure(String name);
+    Flowable<NetworkEvent> sourceFlowable(EventOverflowPolicy policy);
+    Flowable<NetworkEvent> sourceFlowable(Observable<NetworkEvent> source, EventOverflowPolicy policy, Scheduler scheduler);
+    Observable<List<NetworkEvent>> sourceBatched();
+    Observable<List<NetworkEvent>> sourceBatchedOnMain();
     Observable<Throwable> errorSourceOnMain();
 
     void impl_currentUserOn (String userEntityID);
@@ -1,7 +1,9 @@
 package sdk.chat.core.handlers;
 
 import java.util.HashMap;
+import java.util.Map;
 
+import sdk.chat.core.events.LatencyHistogram;
 import sdk.chat.core.hook.Hook;
 import io.reactivex.Completable;
 
@@ -16,4 +18,10 @@ public interface HookHandler {
     void removeHook (Hook hook, String name);
     Completable executeHook (String name, HashMap<String, Object> data);
     Completable executeHook (String name);
+
+    /**
+     * @return how long each named hook took to execute
+     */
+    Map<String, LatencyHistogram> getExecutionTimes();
+    long getTimeoutCount(String name);
 }
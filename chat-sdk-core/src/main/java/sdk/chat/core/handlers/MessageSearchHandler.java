@@ -0,0 +1,28 @@
+package sdk.chat.core.handlers;
+
+import androidx.annotation.Nullable;
+
+import java.util.List;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import sdk.chat.core.dao.Message;
+import sdk.chat.core.types.MessageSearchResult;
+
+/**
+ * Full text search over the messages stored on the device
+ */
+public interface MessageSearchHandler {
+
+    // Searches every thread
+    Single<List<MessageSearchResult>> searchMessages(String query, int offset, int limit);
+
+    // Searches one thread
+    Single<List<MessageSearchResult>> searchMessages(String query, @Nullable Long threadId, int offset, int limit);
+
+    // Called when a message's text changes so it can be re-indexed
+    void messageTextChanged(Message message);
+
+    // Index any messages that haven't been indexed yet
+    Completable updateIndex();
+}
@@ -1,8 +1,10 @@
 package sdk.chat.core.hook;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
 
 import io.reactivex.Completable;
+import io.reactivex.disposables.Disposable;
 
 /**
  * Created by ben on 9/13/17.
@@ -10,10 +12,36 @@ import io.reactivex.Completable;
 
 public class Hook implements AsyncExecutor {
 
+    public enum Mode {
+        // The hook has to complete before executeHook completes
+        Inline,
+        // The hook is started but executeHook doesn't wait for it. Errors are reported to
+        // the event handler
+        FireAndForget,
+    }
+
+    // Use the timeout from the config. MessageReceived hooks have their own default
+    public static final long DefaultTimeout = -1;
+
     public Executor executor;
     public AsyncExecutor asyncExecutor;
     public boolean removeOnFire;
 
+    // Hooks with a higher priority are started first
+    public int priority = 0;
+    public Mode mode = Mode.Inline;
+
+    // executeHook stops waiting for the hook if it takes longer than this. The hook isn't
+    // cancelled. Zero for no timeout
+    public long timeoutMillis = DefaultTimeout;
+
+    // Maximum number of executions of this hook that can run at the same time. Zero for no limit
+    public int maxConcurrent = 0;
+
+    // Guarded by this
+    protected int running = 0;
+    protected final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+
     protected Hook(Executor executor) {
         this(executor, false);
     }
@@ -33,7 +61,7 @@ public class Hook implements AsyncExecutor {
     }
 
     public Completable executeAsync (HashMap<String, Object> data) {
-        return Completable.defer(() -> {
+        Completable completable = Completable.defer(() -> {
             if (asyncExecutor != null) {
                 return asyncExecutor.executeAsync(data);
             }
@@ -42,20 +70,78 @@ public class Hook implements AsyncExecutor {
             }
             return Completable.complete();
         });
+        return maxConcurrent > 0 ? limit(completable) : completable;
+    }
+
+    /**
+     * Wait until fewer than the maximum number of executions are running
+     */
+    protected Completable limit(Completable completable) {
+        return Completable.create(emitter -> {
+            Runnable start = () -> {
+                if (emitter.isDisposed()) {
+                    release();
+                    return;
+                }
+                Disposable d = completable.doFinally(this::release).subscribe(emitter::onComplete, emitter::onError);
+                emitter.setDisposable(d);
+            };
+            synchronized (this) {
+                if (running >= maxConcurrent) {
+                    waiting.add(start);
+                    return;
+                }
+                running++;
+            }
+            start.run();
+        });
+    }
+
+    protected void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                running--;
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    public Hook setPriority(int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public Hook setMode(Mode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    public Hook setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    public Hook setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+        return this;
     }
 
     public static Hook sync(Executor executor) {
         return new Hook(executor);
     }
     public static Hook sync(Executor executor, boolean removeOnFire) {
-        return new Hook(executor);
+        return new Hook(executor, removeOnFire);
     }
 
     public static Hook async(AsyncExecutor executor) {
         return new Hook(executor);
     }
     public static Hook async(AsyncExecutor executor, boolean removeOnFire) {
-        return new Hook(executor);
+        return new Hook(executor, removeOnFire);
     }
 
 }
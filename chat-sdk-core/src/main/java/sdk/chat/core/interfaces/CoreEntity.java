@@ -6,6 +6,7 @@ package sdk.chat.core.interfaces;
 
 public interface CoreEntity extends Entity {
 
+    Long getId ();
     void setEntityID (String entityID);
     boolean equalsEntity(CoreEntity entity);
     boolean equalsEntityID(String entityID);
@@ -0,0 +1,9 @@
+package sdk.chat.core.interfaces;
+
+/**
+ * Applies incoming values to an entity that has already been fetched or created
+ * as part of a batch write
+ */
+public interface EntityUpdater<T> {
+    void update(T entity);
+}
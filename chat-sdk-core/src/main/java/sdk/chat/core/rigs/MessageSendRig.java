@@ -15,7 +15,6 @@ import sdk.chat.core.events.NetworkEvent;
 import sdk.chat.core.hook.HookEvent;
 import sdk.chat.core.session.ChatSDK;
 import sdk.chat.core.types.FileUploadResult;
-import sdk.chat.core.types.MessageSendProgress;
 import sdk.chat.core.types.MessageSendStatus;
 import sdk.chat.core.types.MessageType;
 import sdk.guru.common.RX;
@@ -150,9 +149,17 @@ public class MessageSendRig {
             message.setMessageStatus(MessageSendStatus.Uploading);
 
             for (Uploadable item : uploadables) {
+                // The upload reports progress many times a second. Only notify when the
+                // percentage changes
+                final int[] lastPercent = {-1};
+
                 completables.add(ChatSDK.upload().uploadFile(item.getBytes(), item.name, item.mimeType).flatMapMaybe(result -> {
 
-                    ChatSDK.events().source().accept(NetworkEvent.messageSendStatusChanged(new MessageSendProgress(message, MessageSendStatus.Uploading, result.progress)));
+                    int percent = (int) (result.progress.asFraction() * 100);
+                    if (percent != lastPercent[0] || result.urlValid()) {
+                        lastPercent[0] = percent;
+                        ChatSDK.events().source().accept(NetworkEvent.messageSendStatusChanged(message, MessageSendStatus.Uploading, result.progress));
+                    }
 
                     if (result.urlValid() && messageDidUploadUpdateAction != null) {
                         messageDidUploadUpdateAction.update(message, result);
@@ -0,0 +1,63 @@
+package sdk.chat.core.rx;
+
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.subscribers.ResourceSubscriber;
+import sdk.chat.core.session.ChatSDK;
+
+/**
+ * Subscribes to a paged Flowable and only requests the next page when asked to. Used
+ * to drive a list that loads more items as the user scrolls.
+ */
+public class PageSubscriber<T> extends ResourceSubscriber<T> {
+
+    protected final Consumer<T> onPage;
+    protected final Action onComplete;
+    protected volatile boolean complete = false;
+
+    public PageSubscriber(Consumer<T> onPage, Action onComplete) {
+        this.onPage = onPage;
+        this.onComplete = onComplete;
+    }
+
+    @Override
+    protected void onStart() {
+        request(1);
+    }
+
+    public void requestNextPage() {
+        if (!complete && !isDisposed()) {
+            request(1);
+        }
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public void onNext(T page) {
+        try {
+            onPage.accept(page);
+        } catch (Exception e) {
+            onError(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        complete = true;
+        ChatSDK.events().onError(t);
+    }
+
+    @Override
+    public void onComplete() {
+        complete = true;
+        try {
+            onComplete.run();
+        } catch (Exception e) {
+            ChatSDK.events().onError(e);
+        }
+    }
+
+}
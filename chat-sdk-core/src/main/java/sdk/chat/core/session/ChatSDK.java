@@ -32,6 +32,7 @@ import sdk.chat.core.handlers.HookHandler;
 import sdk.chat.core.handlers.ImageMessageHandler;
 import sdk.chat.core.handlers.LastOnlineHandler;
 import sdk.chat.core.handlers.LocationMessageHandler;
+import sdk.chat.core.handlers.MessageSearchHandler;
 import sdk.chat.core.handlers.ProfilePicturesHandler;
 import sdk.chat.core.handlers.PublicThreadHandler;
 import sdk.chat.core.handlers.PushHandler;
@@ -50,6 +51,7 @@ import sdk.chat.core.interfaces.ThreadType;
 import sdk.chat.core.module.Module;
 import sdk.chat.core.notifications.NotificationDisplayHandler;
 import sdk.chat.core.storage.FileManager;
+import sdk.chat.core.storage.MessageArchiver;
 import sdk.chat.core.utils.AppBackgroundMonitor;
 import sdk.chat.core.utils.KeyStorage;
 import sdk.chat.core.utils.StringChecker;
@@ -77,6 +79,7 @@ public class ChatSDK {
     protected BaseNetworkAdapter networkAdapter;
 
     protected FileManager fileManager;
+    protected MessageArchiver messageArchiver;
 
     protected List<String> requiredPermissions = new ArrayList<>();
 
@@ -189,6 +192,9 @@ public class ChatSDK {
 
         fileManager = new FileManager(context);
 
+        messageArchiver = new MessageArchiver();
+        AppBackgroundMonitor.shared().addListener(messageArchiver);
+
         for (Module module: builder.modules) {
             module.activate(context);
             Logger.info("Module " + module.getName() + " activated successfully");
@@ -216,6 +222,11 @@ public class ChatSDK {
                 }
         }), HookEvent.MessageReceived);
 
+        // Index any messages that were saved before the search index existed
+        if (messageSearch() != null) {
+            messageSearch().updateIndex().subscribe(ChatSDK.events());
+        }
+
         if (onActivateListener != null) {
             onActivateListener.run();
         }
@@ -328,6 +339,10 @@ public class ChatSDK {
         }
     }
 
+    public static MessageSearchHandler messageSearch () {
+        return a().messageSearch;
+    }
+
     public static SearchHandler search () {
         return a().search;
     }
@@ -395,9 +410,14 @@ public class ChatSDK {
     }
 
     public static StorageManager db () {
+        DaoCore.awaitOpen();
         return shared().storageManager;
     }
 
+    public static MessageArchiver archive () {
+        return shared().messageArchiver;
+    }
+
     public static String getMessageImageURL(Message message) {
         String imageURL = message.getImageURL();
         if(StringChecker.isNullOrEmpty(imageURL)) {
@@ -99,6 +99,62 @@ public class Config<T> extends BaseConfig<T> {
 
     public boolean disablePresence = false;
 
+    // Max number of entity ID to row id mappings cached per entity class
+    public int entityIDCacheSize = 1000;
+
+    // Use SQLite write-ahead logging so database reads don't wait for writes
+    public boolean enableWriteAheadLogging = true;
+
+    // Store per message read receipt counts rather than a "none" read receipt for every member
+    public boolean aggregateReadReceipts = false;
+
+    // Keep this many of each thread's newest messages in the database. Zero to disable
+    public int messageRetentionCount = 0;
+
+    // Keep messages newer than this number of days in the database. Zero to disable
+    public int messageRetentionDays = 0;
+
+    // Number of messages moved to the archive per transaction
+    public int messageArchiveBatchSize = 200;
+
+    // Range of message ids added to the search index per transaction when it's being built
+    public int messageSearchIndexBatchSize = 2000;
+
+    // Open the database on a background thread. Database calls wait until it's open
+    public boolean openDatabaseInBackground = true;
+
+    // Number of recent threads to load into memory once the database is open. Zero to disable
+    public int databaseWarmUpThreadCount = 10;
+
+    // Combine frequent updates to the same entity that happen within this window. Zero to disable
+    public long writeBehindWindowMillis = 0;
+
+    // Number of recently used entities of each type held in memory. Zero to use greenDAO's scope
+    public int identityScopeSize = 0;
+
+    // Hold entities that have left the identity scope LRU with soft rather than weak references
+    public boolean identityScopeSoftReferences = false;
+
+    // Events emitted by sourceBatched are collected for this long
+    public long eventBatchWindowMillis = 100;
+
+    // A batch is emitted early when it contains this many events
+    public int eventBatchMaxSize = 500;
+
+    // Count events and measure how long subscribers take to handle them
+    public boolean eventInstrumentationEnabled = false;
+
+    // Log the event bus measurements this often. Zero to disable
+    public long eventInstrumentationLogIntervalSeconds = 0;
+
+    // Stop waiting for hooks that take longer than this so they can't hold up the caller. The
+    // hook itself keeps running. Zero to disable
+    public long hookTimeoutMillis = 0;
+
+    // Incoming messages aren't added to the thread until the MessageReceived hooks complete,
+    // so by default they're only waited for this long. Zero to wait indefinitely
+    public long messageReceivedHookTimeoutMillis = 30000;
+
 //    public boolean disconnectFromServerWhenInBackground = true;
 
     public Config(T onBuild) {
@@ -547,4 +603,155 @@ public class Config<T> extends BaseConfig<T> {
         return this;
     }
 
+    /**
+     * The number of entity IDs to cache per entity class when looking up entities
+     * @param size
+     * @return
+     */
+    public Config<T> setEntityIDCacheSize(int size) {
+        this.entityIDCacheSize = size;
+        return this;
+    }
+
+    /**
+     * Enable SQLite write-ahead logging. Database reads run on their own threads and with
+     * this enabled they don't need to wait for the writer
+     * @param enabled
+     * @return
+     */
+    public Config<T> setEnableWriteAheadLogging(boolean enabled) {
+        this.enableWriteAheadLogging = enabled;
+        return this;
+    }
+
+    /**
+     * Keep delivered and read counts on each message. Other members don't get a read receipt
+     * until they've received the message and the read status is calculated from the counts.
+     * Delivered and read receipts are still stored per member. Useful for large groups
+     * @param value
+     * @return
+     */
+    public Config<T> setAggregateReadReceipts(boolean value) {
+        this.aggregateReadReceipts = value;
+        return this;
+    }
+
+    /**
+     * Move older messages from the database into a compressed archive file for each thread.
+     * A message stays in the database if it's one of the thread's newest messages or if it's
+     * newer than the number of days. Archived messages are loaded back as the user scrolls
+     * @param count number of messages to keep per thread or zero to ignore
+     * @param days number of days of messages to keep or zero to ignore
+     * @return
+     */
+    public Config<T> setMessageRetention(int count, int days) {
+        this.messageRetentionCount = count;
+        this.messageRetentionDays = days;
+        return this;
+    }
+
+    public Config<T> setMessageArchiveBatchSize(int size) {
+        this.messageArchiveBatchSize = size;
+        return this;
+    }
+
+    public Config<T> setMessageSearchIndexBatchSize(int size) {
+        this.messageSearchIndexBatchSize = size;
+        return this;
+    }
+
+    /**
+     * Updates to a message's send status and to thread meta values are delayed by this
+     * amount so repeated updates to the same entity are written once. Pending updates are
+     * written when the app goes into the background
+     * @param millis window length or zero to write every update immediately
+     * @return
+     */
+    public Config<T> setWriteBehindWindowMillis(long millis) {
+        this.writeBehindWindowMillis = millis;
+        return this;
+    }
+
+    /**
+     * Open the database on a background thread so activation doesn't wait for it. This
+     * matters most after an upgrade when migrations have to run
+     * @param value
+     * @return
+     */
+    public Config<T> setOpenDatabaseInBackground(boolean value) {
+        this.openDatabaseInBackground = value;
+        return this;
+    }
+
+    public Config<T> setDatabaseWarmUpThreadCount(int count) {
+        this.databaseWarmUpThreadCount = count;
+        return this;
+    }
+
+    /**
+     * The identity scope keeps this many of the most recently used messages, users, threads
+     * etc. in memory. Older entities can be garbage collected and are released when the
+     * system is low on memory. Off by default. The scope is installed into greenDAO's DAOs by
+     * reflection so if greenDAO is upgraded, or its fields are renamed by a shrinker, the
+     * default scope is used and a warning is logged
+     * @param size entities per type or zero to use greenDAO's unbounded scope
+     * @param softReferences hold older entities with soft references so they're only
+     *                       collected when memory is needed
+     * @return
+     */
+    public Config<T> setIdentityScopeSize(int size, boolean softReferences) {
+        this.identityScopeSize = size;
+        this.identityScopeSoftReferences = softReferences;
+        return this;
+    }
+
+    /**
+     * Set how events are grouped by {@link sdk.chat.core.handlers.EventHandler#sourceBatched()}
+     * @param windowMillis how long events are collected before the batch is emitted
+     * @param maxSize emit the batch early if it reaches this size
+     * @return
+     */
+    public Config<T> setEventBatching(long windowMillis, int maxSize) {
+        this.eventBatchWindowMillis = windowMillis;
+        this.eventBatchMaxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Count the events of each type and measure how long subscribers take to handle them
+     * and how long events take to reach the main thread. The measurements are available
+     * from the event handler's instrumentation
+     * @param enabled
+     * @param logIntervalSeconds log the measurements this often or zero to disable logging
+     * @return
+     */
+    public Config<T> setEventInstrumentation(boolean enabled, long logIntervalSeconds) {
+        this.eventInstrumentationEnabled = enabled;
+        this.eventInstrumentationLogIntervalSeconds = logIntervalSeconds;
+        return this;
+    }
+
+    /**
+     * executeHook stops waiting for hooks that take longer than this and completes. The
+     * hook keeps running and isn't treated as having fired. This can be overridden for
+     * each hook. MessageReceived hooks use {@link #messageReceivedHookTimeoutMillis}
+     * @param millis timeout or zero to wait for hooks indefinitely
+     * @return
+     */
+    public Config<T> setHookTimeoutMillis(long millis) {
+        this.hookTimeoutMillis = millis;
+        return this;
+    }
+
+    /**
+     * How long to wait for MessageReceived hooks before the message is added to the thread.
+     * The hooks keep running. This can be overridden for each hook
+     * @param millis timeout or zero to wait for the hooks indefinitely
+     * @return
+     */
+    public Config<T> setMessageReceivedHookTimeoutMillis(long millis) {
+        this.messageReceivedHookTimeoutMillis = millis;
+        return this;
+    }
+
 }
@@ -1,35 +1,61 @@
 package sdk.chat.core.session;
 
+import android.database.Cursor;
+import android.util.LongSparseArray;
+
 import androidx.annotation.Nullable;
 
 import com.google.android.exoplayer2.C;
 
+import org.greenrobot.greendao.AbstractDao;
+import org.greenrobot.greendao.Property;
 import org.greenrobot.greendao.query.Join;
 import org.greenrobot.greendao.query.QueryBuilder;
 import org.pmw.tinylog.Logger;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
 
 import io.reactivex.Completable;
 import io.reactivex.CompletableSource;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
 import io.reactivex.SingleEmitter;
 import io.reactivex.SingleOnSubscribe;
 import io.reactivex.SingleSource;
+import io.reactivex.functions.BiFunction;
 import sdk.chat.core.dao.DaoCore;
 import sdk.chat.core.dao.Message;
 import sdk.chat.core.dao.MessageDao;
+import sdk.chat.core.dao.MessageMetaValue;
+import sdk.chat.core.dao.MessageMetaValueDao;
 import sdk.chat.core.dao.ReadReceiptUserLink;
 import sdk.chat.core.dao.ReadReceiptUserLinkDao;
 import sdk.chat.core.dao.Thread;
 import sdk.chat.core.dao.ThreadDao;
+import sdk.chat.core.dao.ThreadSummary;
+import sdk.chat.core.dao.ThreadSummaryDao;
 import sdk.chat.core.dao.User;
+import sdk.chat.core.dao.UserDao;
+import sdk.chat.core.dao.UserMetaValue;
+import sdk.chat.core.dao.UserMetaValueDao;
 import sdk.chat.core.dao.UserThreadLink;
 import sdk.chat.core.dao.UserThreadLinkDao;
+import sdk.chat.core.dao.sorter.MessageSorter;
 import sdk.chat.core.interfaces.CoreEntity;
+import sdk.chat.core.interfaces.EntityUpdater;
 import sdk.chat.core.types.ReadStatus;
 import sdk.chat.core.utils.TimeLog;
 import sdk.guru.common.Optional;
@@ -44,6 +70,19 @@ import static sdk.chat.core.dao.DaoCore.fetchEntityWithProperty;
 
 public class StorageManager {
 
+    // SQLite allows 999 bound variables per statement by default
+    protected static final int MaxQueryVariables = 500;
+
+    // Messages that weren't sent by the current user and that the current user hasn't read.
+    // Parameters: current user id, read status, current user id
+    protected static final String UnreadMessagesFrom =
+            " FROM \"" + MessageDao.TABLENAME + "\" M" +
+            " JOIN \"" + ReadReceiptUserLinkDao.TABLENAME + "\" R" +
+            " ON R." + ReadReceiptUserLinkDao.Properties.MessageId.columnName + " = M." + MessageDao.Properties.Id.columnName +
+            " WHERE R." + ReadReceiptUserLinkDao.Properties.UserId.columnName + " = ?" +
+            " AND R." + ReadReceiptUserLinkDao.Properties.Status.columnName + " != ?" +
+            " AND M." + MessageDao.Properties.SenderId.columnName + " != ?";
+
     public List<Thread> fetchThreadsForCurrentUser() {
         Logger.debug(java.lang.Thread.currentThread().getName());
 
@@ -66,15 +105,13 @@ public class StorageManager {
     }
 
     public Single<List<Thread>> fetchThreadsForCurrentUserAsync() {
-        return Single.defer(() -> Single.just(fetchThreadsForCurrentUser())).subscribeOn(RX.db());
+        return Single.defer(() -> Single.just(fetchThreadsForCurrentUser())).subscribeOn(RX.dbRead());
     }
 
     public ReadReceiptUserLink readReceipt(Long messageId, Long userId) {
         Logger.debug(java.lang.Thread.currentThread().getName());
 
-        QueryBuilder<ReadReceiptUserLink> queryBuilder = daoSession.queryBuilder(ReadReceiptUserLink.class);
-        queryBuilder.where(ReadReceiptUserLinkDao.Properties.UserId.eq(userId)).where(ReadReceiptUserLinkDao.Properties.MessageId.eq(messageId));
-        List<ReadReceiptUserLink> links = queryBuilder.list();
+        List<ReadReceiptUserLink> links = DaoCore.queryPool.readReceipt(messageId, userId).list();
 
         if (links.size() > 1) {
             Logger.debug("Multiple read receipts for one user");
@@ -91,7 +128,7 @@ public class StorageManager {
     }
 
     public Single<Optional<ReadReceiptUserLink>> readReceiptAsync(Long messageId, Long userId) {
-        return Single.defer(() -> Single.just(new Optional<>(readReceipt(messageId, userId)))).subscribeOn(RX.db());
+        return Single.defer(() -> Single.just(new Optional<>(readReceipt(messageId, userId)))).subscribeOn(RX.dbRead());
     }
 
     public <T extends CoreEntity> T fetchOrCreateEntityWithEntityID(Class<T> c, String entityId){
@@ -103,13 +140,158 @@ public class StorageManager {
             entity = DaoCore.getEntityForClass(c);
             entity.setEntityID(entityId);
             entity = DaoCore.createEntity(entity);
+            DaoCore.cacheEntityID(c, entity);
         }
 
         return entity;
     }
 
     public <T extends CoreEntity> Single<T> fetchOrCreateEntityWithEntityIDAsync(Class<T> c, String entityId) {
-        return Single.defer(() -> Single.just(fetchOrCreateEntityWithEntityID(c, entityId))).subscribeOn(RX.db());
+        return Single.defer(() -> Single.just(fetchOrCreateEntityWithEntityID(c, entityId))).subscribeOn(RX.dbWrite());
+    }
+
+    /**
+     * Run a block of database work in a single SQLite transaction
+     */
+    public void runInTransaction(Runnable runnable) {
+        daoSession.runInTx(runnable);
+    }
+
+    public <V> V callInTransaction(Callable<V> callable) {
+        return daoSession.callInTxNoException(callable);
+    }
+
+    public Completable runInTransactionAsync(Runnable runnable) {
+        return Completable.defer(() -> {
+            runInTransaction(runnable);
+            return Completable.complete();
+        }).subscribeOn(RX.dbWrite());
+    }
+
+    /**
+     * Fetch the entities for a collection of entity IDs. The IDs are resolved with one
+     * IN query per chunk rather than one query per entity
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends CoreEntity> Map<String, T> fetchEntitiesWithEntityIDs(Class<T> c, Collection<String> entityIDs) {
+        Map<String, T> entities = new HashMap<>();
+
+        AbstractDao<T, ?> dao = (AbstractDao<T, ?>) daoSession.getDao(c);
+        Property property = dao.getProperties()[1];
+        if (!property.columnName.equals(DaoCore.EntityID.columnName)) {
+            return entities;
+        }
+
+        // Anything in the entity ID cache can be loaded by primary key
+        List<String> ids = new ArrayList<>();
+        for (String entityID: new LinkedHashSet<>(entityIDs)) {
+            if (entityID != null) {
+                T entity = DaoCore.fetchCachedEntityWithEntityID(c, entityID);
+                if (entity != null) {
+                    entities.put(entityID, entity);
+                } else {
+                    ids.add(entityID);
+                }
+            }
+        }
+
+        for (int i = 0; i < ids.size(); i += MaxQueryVariables) {
+            List<String> chunk = ids.subList(i, Math.min(i + MaxQueryVariables, ids.size()));
+            for (T entity: dao.queryBuilder().where(property.in(chunk)).list()) {
+                entities.put(entity.getEntityID(), entity);
+                DaoCore.cacheEntityID(c, entity);
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Create entities for a collection of entity IDs in a single transaction
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends CoreEntity> Map<String, T> createEntitiesWithEntityIDs(Class<T> c, Collection<String> entityIDs) {
+        Map<String, T> entities = new HashMap<>();
+        for (String entityID: entityIDs) {
+            if (entityID != null && !entities.containsKey(entityID)) {
+                T entity = DaoCore.getEntityForClass(c);
+                entity.setEntityID(entityID);
+                entities.put(entityID, entity);
+            }
+        }
+        if (!entities.isEmpty()) {
+            AbstractDao<T, ?> dao = (AbstractDao<T, ?>) daoSession.getDao(c);
+            dao.insertOrReplaceInTx(entities.values());
+            for (T entity: entities.values()) {
+                DaoCore.cacheEntityID(c, entity);
+            }
+        }
+        return entities;
+    }
+
+    public <T extends CoreEntity> Map<String, T> fetchOrCreateEntitiesWithEntityIDs(Class<T> c, Collection<String> entityIDs) {
+        return callInTransaction(() -> {
+            Map<String, T> entities = fetchEntitiesWithEntityIDs(c, entityIDs);
+
+            List<String> missing = new ArrayList<>();
+            for (String entityID: entityIDs) {
+                if (entityID != null && !entities.containsKey(entityID)) {
+                    missing.add(entityID);
+                }
+            }
+            entities.putAll(createEntitiesWithEntityIDs(c, missing));
+
+            return entities;
+        });
+    }
+
+    /**
+     * Insert or update a batch of messages in one transaction. The messages are resolved
+     * with a single IN query, each updater is applied, the rows are written together and
+     * any new messages are added to the thread in date order. Messages newer than the
+     * thread's tail are appended, older ones are linked in by date
+     * @param updates map of message entity ID to the updater that fills in its values
+     * @return the messages in ascending date order
+     */
+    public List<Message> upsertMessages(@Nullable Thread thread, Map<String, EntityUpdater<Message>> updates) {
+        return callInTransaction(() -> {
+            Map<String, Message> messages = fetchOrCreateEntitiesWithEntityIDs(Message.class, updates.keySet());
+
+            List<Message> list = new ArrayList<>();
+            for (String entityID: updates.keySet()) {
+                Message message = messages.get(entityID);
+                if (message != null) {
+                    updates.get(entityID).update(message);
+                    list.add(message);
+                }
+            }
+
+            daoSession.getMessageDao().updateInTx(list);
+
+            Collections.sort(list, new MessageSorter(DaoCore.ORDER_ASC));
+
+            if (thread != null) {
+                // Only messages newer than the tail are appended. A backfilled page of
+                // older messages is placed by date and leaves the tail alone
+                Message tail = thread.getTailMessage();
+                List<Message> newer = new ArrayList<>();
+                List<Message> older = new ArrayList<>();
+                for (Message message: list) {
+                    if (tail == null || message.getDate() == null || tail.getDate() == null || !message.getDate().before(tail.getDate())) {
+                        newer.add(message);
+                    } else {
+                        older.add(message);
+                    }
+                }
+                if (!older.isEmpty()) {
+                    thread.insertMessages(older, false);
+                }
+                if (!newer.isEmpty()) {
+                    thread.addMessages(newer, false);
+                }
+            }
+
+            return list;
+        });
     }
 
     public <T> T createEntity (Class<T> c) {
@@ -120,7 +302,7 @@ public class StorageManager {
     }
 
     public <T> Single<T> createEntityAsync (Class<T> c) {
-        return Single.defer(() -> Single.just(createEntity(c)).subscribeOn(RX.db()));
+        return Single.defer(() -> Single.just(createEntity(c))).subscribeOn(RX.dbWrite());
     }
 
     public <T extends CoreEntity> T insertOrReplaceEntity (T entity) {
@@ -129,7 +311,7 @@ public class StorageManager {
     }
 
     public <T extends CoreEntity> Single<T> insertOrReplaceEntityAsync(T entity) {
-        return Single.defer(() -> Single.just(insertOrReplaceEntity(entity)).subscribeOn(RX.db()));
+        return Single.defer(() -> Single.just(insertOrReplaceEntity(entity))).subscribeOn(RX.dbWrite());
     }
 
     public <T extends CoreEntity> T fetchEntityWithEntityID(Object entityID, Class<T> c) {
@@ -137,7 +319,7 @@ public class StorageManager {
     }
 
     public <T extends CoreEntity> Single<T> fetchEntityWithEntityIDAsync(Object entityID, Class<T> c) {
-        return Single.defer(() -> Single.just(fetchEntityWithEntityID(entityID, c)).subscribeOn(RX.db()));
+        return Single.defer(() -> Single.just(fetchEntityWithEntityID(entityID, c))).subscribeOn(RX.dbRead());
     }
 
     public User fetchUserWithEntityID (String entityID) {
@@ -145,7 +327,7 @@ public class StorageManager {
     }
 
     public Single<User> fetchUserWithEntityIDAsync(String entityID) {
-        return Single.defer(() -> Single.just(fetchUserWithEntityID(entityID)).subscribeOn(RX.db()));
+        return Single.defer(() -> Single.just(fetchUserWithEntityID(entityID))).subscribeOn(RX.dbRead());
     }
 
     public List<Thread> fetchThreadsWithType (int type) {
@@ -153,7 +335,7 @@ public class StorageManager {
     }
 
     public Single<List<Thread>> fetchThreadsWithTypeAsync(int type) {
-        return Single.defer(() -> Single.just(fetchThreadsWithType(type)).subscribeOn(RX.db()));
+        return Single.defer(() -> Single.just(fetchThreadsWithType(type))).subscribeOn(RX.dbRead());
     }
 
     public List<Message> fetchUnreadMessagesForThread (Long threadId) {
@@ -173,7 +355,307 @@ public class StorageManager {
     }
 
     public Single<List<Message>> fetchUnreadMessagesForThreadAsync(Long threadId) {
-        return Single.defer(() -> Single.just(fetchUnreadMessagesForThread(threadId)).subscribeOn(RX.db()));
+        return Single.defer(() -> Single.just(fetchUnreadMessagesForThread(threadId))).subscribeOn(RX.dbRead());
+    }
+
+    /**
+     * Count the unread messages in a thread without loading them
+     */
+    public int fetchUnreadMessageCountForThread(Long threadId) {
+        User currentUser = ChatSDK.currentUser();
+        if (currentUser == null || threadId == null) {
+            return 0;
+        }
+
+        String userId = String.valueOf(currentUser.getId());
+        String sql = "SELECT COUNT(*)" + UnreadMessagesFrom + " AND M." + MessageDao.Properties.ThreadId.columnName + " = ?";
+
+        Cursor cursor = daoSession.getDatabase().rawQuery(sql, new String[] {userId, String.valueOf(ReadStatus.Read), userId, String.valueOf(threadId)});
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * The number of unread messages in every thread with at least one unread message,
+     * calculated with a single grouped query
+     * @return map of thread id to unread count
+     */
+    public LongSparseArray<Integer> unreadCounts() {
+        LongSparseArray<Integer> counts = new LongSparseArray<>();
+
+        User currentUser = ChatSDK.currentUser();
+        if (currentUser == null) {
+            return counts;
+        }
+
+        String userId = String.valueOf(currentUser.getId());
+        String threadId = "M." + MessageDao.Properties.ThreadId.columnName;
+        String sql = "SELECT " + threadId + ", COUNT(*)" + UnreadMessagesFrom + " GROUP BY " + threadId;
+
+        Cursor cursor = daoSession.getDatabase().rawQuery(sql, new String[] {userId, String.valueOf(ReadStatus.Read), userId});
+        try {
+            while (cursor.moveToNext()) {
+                if (!cursor.isNull(0)) {
+                    counts.put(cursor.getLong(0), cursor.getInt(1));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return counts;
+    }
+
+    public Single<LongSparseArray<Integer>> unreadCountsAsync() {
+        return Single.defer(() -> Single.just(unreadCounts())).subscribeOn(RX.dbRead());
+    }
+
+    /**
+     * Counts a message's read receipts without loading them
+     * @return the number of users with a visible status, the number who have received the
+     * message and the number who have read it
+     */
+    public int[] readReceiptCounts(Long messageId) {
+        String status = ReadReceiptUserLinkDao.Properties.Status.columnName;
+        String sql = "SELECT COUNT(*)" +
+                ", SUM(CASE WHEN " + status + " >= ? THEN 1 ELSE 0 END)" +
+                ", SUM(CASE WHEN " + status + " >= ? THEN 1 ELSE 0 END)" +
+                " FROM \"" + ReadReceiptUserLinkDao.TABLENAME + "\"" +
+                " WHERE " + ReadReceiptUserLinkDao.Properties.MessageId.columnName + " = ?" +
+                " AND " + status + " != ?";
+
+        Cursor cursor = daoSession.getDatabase().rawQuery(sql, new String[] {
+                String.valueOf(ReadStatus.Delivered),
+                String.valueOf(ReadStatus.Read),
+                String.valueOf(messageId),
+                String.valueOf(ReadStatus.Hide)
+        });
+        try {
+            if (cursor.moveToFirst()) {
+                return new int[] {cursor.getInt(0), cursor.getInt(1), cursor.getInt(2)};
+            }
+            return new int[] {0, 0, 0};
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Load the summaries for a list of threads in one query and attach them to the threads
+     * so that sorting the thread list doesn't hit the database for each comparison
+     */
+    public void loadThreadSummaries(List<Thread> threads) {
+        List<Long> ids = new ArrayList<>();
+        Map<Long, Thread> threadMap = new HashMap<>();
+        for (Thread thread: threads) {
+            if (thread.getId() != null) {
+                ids.add(thread.getId());
+                threadMap.put(thread.getId(), thread);
+            }
+        }
+        for (int i = 0; i < ids.size(); i += MaxQueryVariables) {
+            List<Long> chunk = ids.subList(i, Math.min(i + MaxQueryVariables, ids.size()));
+            List<ThreadSummary> summaries = daoSession.getThreadSummaryDao().queryBuilder()
+                    .where(ThreadSummaryDao.Properties.ThreadId.in(chunk))
+                    .list();
+            for (ThreadSummary summary: summaries) {
+                Thread thread = threadMap.get(summary.getThreadId());
+                if (thread != null) {
+                    thread.setSummary(summary);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unread counts are relative to the current user so the summaries have to be rebuilt
+     * if a different user logs in
+     */
+    public void clearThreadSummaries() {
+        daoSession.getThreadSummaryDao().deleteAll();
+        daoSession.getThreadDao().detachAll();
+    }
+
+    /**
+     * Deletes every message in a thread along with the messages' meta values and read
+     * receipts. Only the keys that are deleted are removed from the identity scope so
+     * entities from other threads stay attached. No messageRemoved events are sent
+     */
+    public void deleteMessagesForThread(Long threadId) {
+        if (threadId == null) {
+            return;
+        }
+        String messageIds = "SELECT " + MessageDao.Properties.Id.columnName +
+                " FROM \"" + MessageDao.TABLENAME + "\"" +
+                " WHERE " + MessageDao.Properties.ThreadId.columnName + " = ?";
+        String[] args = new String[] {String.valueOf(threadId)};
+
+        runInTransaction(() -> {
+            DaoCore.searchIndex.removeMessagesForThread(threadId);
+
+            List<Long> metaValueIds = longsForQuery("SELECT " + MessageMetaValueDao.Properties.Id.columnName + " FROM \"" + MessageMetaValueDao.TABLENAME + "\"" +
+                    " WHERE " + MessageMetaValueDao.Properties.MessageId.columnName + " IN (" + messageIds + ")", args);
+            List<Long> linkIds = longsForQuery("SELECT " + ReadReceiptUserLinkDao.Properties.Id.columnName + " FROM \"" + ReadReceiptUserLinkDao.TABLENAME + "\"" +
+                    " WHERE " + ReadReceiptUserLinkDao.Properties.MessageId.columnName + " IN (" + messageIds + ")", args);
+
+            // Deleting by key reuses one compiled statement and detaches each key
+            daoSession.getMessageMetaValueDao().deleteByKeyInTx(metaValueIds);
+            daoSession.getReadReceiptUserLinkDao().deleteByKeyInTx(linkIds);
+            daoSession.getMessageDao().deleteByKeyInTx(longsForQuery(messageIds, args));
+        });
+    }
+
+    protected List<Long> longsForQuery(String sql, String[] args) {
+        List<Long> values = new ArrayList<>();
+        Cursor cursor = daoSession.getDatabase().rawQuery(sql, args);
+        try {
+            while (cursor.moveToNext()) {
+                if (!cursor.isNull(0)) {
+                    values.add(cursor.getLong(0));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return values;
+    }
+
+    /**
+     * Load the relations that are used to display a page of messages and attach them to the
+     * messages. The senders, threads, neighbouring messages, meta values, read receipts and
+     * the users' meta values are each loaded with IN queries so binding the page doesn't
+     * run a query for every message
+     */
+    public void prefetchRelations(List<Message> messages) {
+        Map<Long, Message> messageMap = new HashMap<>();
+        for (Message message: messages) {
+            if (message.getId() != null) {
+                messageMap.put(message.getId(), message);
+            }
+        }
+        if (messageMap.isEmpty()) {
+            return;
+        }
+
+        // Neighbours that aren't in the page
+        Set<Long> neighbourIds = new HashSet<>();
+        for (Message message: messageMap.values()) {
+            addIfAbsent(neighbourIds, message.getNextMessageId(), messageMap);
+            addIfAbsent(neighbourIds, message.getPreviousMessageId(), messageMap);
+        }
+        Map<Long, Message> neighbours = new HashMap<>(messageMap);
+        for (Message message: listWhereIn(daoSession.getMessageDao(), MessageDao.Properties.Id, neighbourIds)) {
+            neighbours.put(message.getId(), message);
+        }
+
+        Set<Long> threadIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (Message message: neighbours.values()) {
+            addIfAbsent(userIds, message.getSenderId(), null);
+        }
+        for (Message message: messageMap.values()) {
+            addIfAbsent(threadIds, message.getThreadId(), null);
+        }
+
+        Map<Long, List<MessageMetaValue>> metaValues = new HashMap<>();
+        for (MessageMetaValue value: listWhereIn(daoSession.getMessageMetaValueDao(), MessageMetaValueDao.Properties.MessageId, messageMap.keySet())) {
+            listForKey(metaValues, value.getMessageId()).add(value);
+        }
+
+        Map<Long, List<ReadReceiptUserLink>> links = new HashMap<>();
+        for (ReadReceiptUserLink link: listWhereIn(daoSession.getReadReceiptUserLinkDao(), ReadReceiptUserLinkDao.Properties.MessageId, messageMap.keySet())) {
+            listForKey(links, link.getMessageId()).add(link);
+            addIfAbsent(userIds, link.getUserId(), null);
+        }
+
+        Map<Long, Thread> threads = new HashMap<>();
+        for (Thread thread: listWhereIn(daoSession.getThreadDao(), ThreadDao.Properties.Id, threadIds)) {
+            threads.put(thread.getId(), thread);
+        }
+
+        Map<Long, User> users = new HashMap<>();
+        for (User user: listWhereIn(daoSession.getUserDao(), UserDao.Properties.Id, userIds)) {
+            users.put(user.getId(), user);
+        }
+
+        Map<Long, List<UserMetaValue>> userMetaValues = new HashMap<>();
+        for (UserMetaValue value: listWhereIn(daoSession.getUserMetaValueDao(), UserMetaValueDao.Properties.UserId, users.keySet())) {
+            listForKey(userMetaValues, value.getUserId()).add(value);
+        }
+        for (User user: users.values()) {
+            user.setPrefetchedMetaValues(listForKey(userMetaValues, user.getId()));
+        }
+
+        // Only set the to-one relations that were found so the foreign keys aren't changed
+        for (Message message: neighbours.values()) {
+            User sender = users.get(message.getSenderId());
+            if (sender != null) {
+                message.setSender(sender);
+            }
+        }
+        for (Message message: messageMap.values()) {
+            Thread thread = threads.get(message.getThreadId());
+            if (thread != null) {
+                message.setThread(thread);
+            }
+            Message next = neighbours.get(message.getNextMessageId());
+            if (next != null) {
+                message.setNextMessage(next);
+            }
+            Message previous = neighbours.get(message.getPreviousMessageId());
+            if (previous != null) {
+                message.setPreviousMessage(previous);
+            }
+
+            List<ReadReceiptUserLink> messageLinks = listForKey(links, message.getId());
+            for (ReadReceiptUserLink link: messageLinks) {
+                User user = users.get(link.getUserId());
+                if (user != null) {
+                    link.setUser(user);
+                }
+            }
+            message.setPrefetchedRelations(listForKey(metaValues, message.getId()), messageLinks);
+        }
+    }
+
+    protected static void addIfAbsent(Set<Long> ids, Long id, @Nullable Map<Long, ?> loaded) {
+        if (id != null && (loaded == null || !loaded.containsKey(id))) {
+            ids.add(id);
+        }
+    }
+
+    protected static <T> List<T> listForKey(Map<Long, List<T>> map, Long key) {
+        List<T> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(key, list);
+        }
+        return list;
+    }
+
+    /**
+     * Load the entities where the property is one of the ids, one query per chunk
+     */
+    protected <T> List<T> listWhereIn(AbstractDao<T, ?> dao, Property property, Collection<Long> ids) {
+        List<T> entities = new ArrayList<>();
+        List<Long> list = new ArrayList<>(ids);
+        for (int i = 0; i < list.size(); i += MaxQueryVariables) {
+            List<Long> chunk = list.subList(i, Math.min(i + MaxQueryVariables, list.size()));
+            entities.addAll(dao.queryBuilder().where(property.in(chunk)).list());
+        }
+        return entities;
+    }
+
+    public ThreadSummary fetchThreadSummary(Long threadId) {
+        if (threadId == null) {
+            return null;
+        }
+        return daoSession.getThreadSummaryDao().queryBuilder()
+                .where(ThreadSummaryDao.Properties.ThreadId.eq(threadId))
+                .unique();
     }
 
 //    public int fetchUnreadMessageCount(ThreadType threadType) {
@@ -204,7 +686,7 @@ public class StorageManager {
     }
 
     public Single<Thread> fetchThreadWithIDAsync (long threadID) {
-        return Single.defer(() -> Single.just(fetchThreadWithID(threadID)).subscribeOn(RX.db()));
+        return Single.defer(() -> Single.just(fetchThreadWithID(threadID))).subscribeOn(RX.dbRead());
     }
 
     public Thread fetchThreadWithEntityID (String entityID) {
@@ -216,21 +698,43 @@ public class StorageManager {
     }
 
     public Single<Thread> fetchThreadWithEntityIDAsync (String entityID) {
-        return Single.defer(() -> Single.just(fetchThreadWithEntityID(entityID)).subscribeOn(RX.db()));
+        return Single.defer(() -> Single.just(fetchThreadWithEntityID(entityID))).subscribeOn(RX.dbRead());
     }
 
+    /**
+     * Find a thread the current user belongs to whose members are exactly these users. Uses
+     * the indexed member hash so only threads with a matching hash are checked
+     */
     public Thread fetchThreadWithUsers (List<User> users) {
         Logger.debug(java.lang.Thread.currentThread().getName());
-        for(Thread t : allThreads()) {
-            if(t.getUsers().equals(users)) {
-                return t;
+
+        User currentUser = ChatSDK.currentUser();
+        if (currentUser == null || users == null) {
+            return null;
+        }
+
+        SortedSet<Long> ids = new TreeSet<>();
+        for (User user : users) {
+            if (user.getId() == null) {
+                return null;
+            }
+            ids.add(user.getId());
+        }
+        if (!ids.contains(currentUser.getId())) {
+            return null;
+        }
+
+        List<Thread> threads = DaoCore.fetchEntitiesWithProperty(Thread.class, ThreadDao.Properties.MemberHash, DaoCore.memberHash(ids));
+        for (Thread thread : threads) {
+            if (thread.getUserIds().equals(ids)) {
+                return thread;
             }
         }
         return null;
     }
 
     public Single<Thread> fetchThreadWithUsersAsync (List<User> users) {
-        return Single.defer(() -> Single.just(fetchThreadWithUsers(users)).subscribeOn(RX.db()));
+        return Single.defer(() -> Single.just(fetchThreadWithUsers(users))).subscribeOn(RX.dbRead());
     }
 
     public List<Thread> allThreads() {
@@ -246,7 +750,7 @@ public class StorageManager {
     }
 
     public Single<List<Thread>> allThreadsAsync() {
-        return Single.defer(() -> Single.just(allThreads()).subscribeOn(RX.db()));
+        return Single.defer(() -> Single.just(allThreads())).subscribeOn(RX.dbRead());
     }
 
 
@@ -261,33 +765,62 @@ public class StorageManager {
             from = null;
         }
 
-        QueryBuilder<Message> qb = daoSession.queryBuilder(Message.class);
-        qb.where(MessageDao.Properties.ThreadId.eq(threadID));
-
-        // Making sure no null messages infected the sort.
-        qb.where(MessageDao.Properties.Date.isNotNull());
-        qb.where(MessageDao.Properties.SenderId.isNotNull());
+        return DaoCore.queryPool.messagesForThread(threadID, from, to, limit).list();
+    }
 
-        if(to != null) {
-            qb.where(MessageDao.Properties.Date.lt(to.getTime()));
-        }
-        if(from != null) {
-            qb.where(MessageDao.Properties.Date.gt(from.getTime()));
-        }
+    public Single<List<Message>> fetchMessagesForThreadWithIDAsync(long threadID, Date from, Date to, int limit) {
+        return Single.defer(() -> Single.just(fetchMessagesForThreadWithID(threadID, from, to, limit))).subscribeOn(RX.dbRead());
+    }
+
+    /**
+     * Fetch one page of messages after the anchor message in the given order. Paging is keyed
+     * on (date, id) so messages that share a timestamp are never skipped or duplicated
+     * @param anchorDate date of the last message of the previous page or null to start at the end
+     * @param anchorId id of the last message of the previous page
+     * @param order {@link DaoCore#ORDER_DESC} to page back in time, {@link DaoCore#ORDER_ASC} to page forward
+     */
+    public List<Message> fetchMessagesPage(long threadID, @Nullable Date anchorDate, @Nullable Long anchorId, int order, int pageSize) {
+        return DaoCore.queryPool.messagesPage(threadID, anchorDate, anchorId, order, pageSize).list();
+    }
+
+    /**
+     * Stream the messages of a thread one page at a time. A page is only read when it's
+     * requested and the next page is read ahead while the current one is being consumed,
+     * so the whole history is never held in memory at once
+     * @param anchorDate start after this date or null to start from the newest (or oldest) message
+     * @param order {@link DaoCore#ORDER_DESC} to stream back in time, {@link DaoCore#ORDER_ASC} to stream forward
+     */
+    public Flowable<List<Message>> streamMessages(long threadID, @Nullable Date anchorDate, int order, int pageSize) {
+        return streamMessages(threadID, anchorDate, null, order, pageSize);
+    }
+
+    /**
+     * @param anchorId id of the anchor message, used to break ties between messages with the same date
+     */
+    public Flowable<List<Message>> streamMessages(long threadID, @Nullable Date anchorDate, @Nullable Long anchorId, int order, int pageSize) {
+        final int size = Math.max(1, pageSize);
+        return Flowable.generate(() -> new MessageKey(anchorDate, anchorId), (BiFunction<MessageKey, Emitter<List<Message>>, MessageKey>) (key, emitter) -> {
+            List<Message> page = fetchMessagesPage(threadID, key.date, key.id, order, size);
+            if (!page.isEmpty()) {
+                Message last = page.get(page.size() - 1);
+                key = new MessageKey(last.getDate(), last.getId());
+                emitter.onNext(page);
+            }
+            if (page.size() < size) {
+                emitter.onComplete();
+            }
+            return key;
+        }).subscribeOn(RX.dbRead()).rebatchRequests(2);
+    }
 
-        qb.orderDesc(MessageDao.Properties.Date);
+    protected static class MessageKey {
+        final Date date;
+        final Long id;
 
-        if (limit > 0) {
-            qb.limit(limit);
+        MessageKey(Date date, Long id) {
+            this.date = date;
+            this.id = id;
         }
-
-        List<Message> list = qb.list();
-
-        return  list;
-    }
-
-    public Single<List<Message>> fetchMessagesForThreadWithIDAsync(long threadID, Date from, Date to, int limit) {
-        return Single.defer(() -> Single.just(fetchMessagesForThreadWithID(threadID, from, to, limit)).subscribeOn(RX.db()));
     }
 
     public void update(CoreEntity entity) {
@@ -298,7 +831,7 @@ public class StorageManager {
         return Completable.defer(() -> {
             update(entity);
             return Completable.complete();
-        }).subscribeOn(RX.db());
+        }).subscribeOn(RX.dbWrite());
     }
 
     public void delete(Object entity) {
@@ -308,6 +841,6 @@ public class StorageManager {
         return Completable.defer(() -> {
             delete(entity);
             return Completable.complete();
-        }).subscribeOn(RX.db());
+        }).subscribeOn(RX.dbWrite());
     }
 }
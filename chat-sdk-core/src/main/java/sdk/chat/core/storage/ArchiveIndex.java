@@ -0,0 +1,148 @@
+package sdk.chat.core.storage;
+
+import org.pmw.tinylog.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A small file kept next to a message archive that records where each gzip member starts
+ * and the range of message dates it holds. A page of messages can then be read by
+ * decompressing only the members that cover it rather than the whole archive.
+ *
+ * Each line is "offset length minDate maxDate". The archive is always written first so the
+ * index can fall behind it but never get ahead of it.
+ */
+public class ArchiveIndex {
+
+    public static String extension = ".idx";
+
+    public static class Entry {
+
+        public final long offset;
+        public final long length;
+        public final long minDate;
+        public final long maxDate;
+
+        public Entry(long offset, long length, long minDate, long maxDate) {
+            this.offset = offset;
+            this.length = length;
+            this.minDate = minDate;
+            this.maxDate = maxDate;
+        }
+
+        public long end() {
+            return offset + length;
+        }
+
+        public boolean overlaps(long from, long to) {
+            return minDate <= to && maxDate >= from;
+        }
+
+        @Override
+        public String toString() {
+            return offset + " " + length + " " + minDate + " " + maxDate;
+        }
+
+        public static Entry parse(String line) {
+            String[] parts = line.trim().split(" ");
+            if (parts.length != 4) {
+                return null;
+            }
+            try {
+                return new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    protected final File file;
+    protected final List<Entry> entries = new ArrayList<>();
+
+    protected ArchiveIndex(File file) {
+        this.file = file;
+    }
+
+    public static File indexFile(File archive) {
+        return new File(archive.getParentFile(), archive.getName() + extension);
+    }
+
+    /**
+     * Read the index for an archive. Entries that don't follow on from each other are
+     * dropped along with everything after them, so the entries always cover the start of
+     * the archive without gaps
+     */
+    public static ArchiveIndex read(File archive) throws IOException {
+        ArchiveIndex index = new ArchiveIndex(indexFile(archive));
+        if (!index.file.exists()) {
+            return index;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(index.file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry = Entry.parse(line);
+                if (entry == null || entry.offset != index.end() || entry.length <= 0) {
+                    Logger.warn("Archive index is damaged: " + index.file.getName());
+                    break;
+                }
+                index.entries.add(entry);
+            }
+        } finally {
+            reader.close();
+        }
+        return index;
+    }
+
+    /**
+     * @return the length of the archive covered by the index
+     */
+    public long end() {
+        return entries.isEmpty() ? 0 : entries.get(entries.size() - 1).end();
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Add an entry for a member that has just been written to the end of the archive. If
+     * the index can't be written the entry is still used until the index is read again,
+     * when the member will be picked up as part of the archive the index doesn't cover
+     */
+    public void add(Entry entry) {
+        entries.add(entry);
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8");
+            try {
+                writer.write(entry.toString());
+                writer.write('\n');
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            Logger.warn(e, "Unable to update archive index: " + file.getName());
+        }
+    }
+
+    /**
+     * Forget every entry, for example because the archive is shorter than the index says
+     */
+    public void clear() {
+        entries.clear();
+        if (file.exists() && !file.delete()) {
+            Logger.warn("Unable to delete archive index: " + file.getName());
+        }
+    }
+
+}
@@ -0,0 +1,619 @@
+package sdk.chat.core.storage;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.pmw.tinylog.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import sdk.chat.core.dao.DaoCore;
+import sdk.chat.core.dao.Message;
+import sdk.chat.core.dao.MessageDao;
+import sdk.chat.core.dao.MessageMetaValue;
+import sdk.chat.core.dao.ReadReceiptUserLink;
+import sdk.chat.core.dao.Thread;
+import sdk.chat.core.dao.User;
+import sdk.chat.core.session.ChatSDK;
+import sdk.chat.core.types.MessageSendStatus;
+import sdk.chat.core.utils.AppBackgroundMonitor;
+import sdk.guru.common.RX;
+
+import static sdk.chat.core.dao.DaoCore.daoSession;
+
+/**
+ * Moves old messages out of the database and into a compressed archive file per thread.
+ * A message is kept in the database if it's one of the thread's newest
+ * {@link sdk.chat.core.session.Config#messageRetentionCount} messages or if it's newer than
+ * {@link sdk.chat.core.session.Config#messageRetentionDays}. Older messages are written to
+ * the archive along with their meta values and read receipts, then deleted.
+ *
+ * The archive is append only. Each batch is written as a new gzip member holding one JSON
+ * record per line. An {@link ArchiveIndex} records the date range of each member so only
+ * the members that are needed are decompressed. Archived messages are restored to the
+ * database a page at a time when the user scrolls back past the messages that are still
+ * stored locally.
+ *
+ * All archive work runs on the database writer so reads and writes to the files are never
+ * concurrent.
+ */
+public class MessageArchiver implements AppBackgroundMonitor.Listener {
+
+    public static String archive = "archive";
+    public static String extension = ".jsonl.gz";
+
+    protected static final String EntityIDKey = "id";
+    protected static final String DateKey = "date";
+    protected static final String TypeKey = "type";
+    protected static final String StatusKey = "status";
+    protected static final String FromKey = "from";
+    protected static final String MetaKey = "meta";
+    protected static final String ReadKey = "read";
+
+    // Messages that are still being sent can't be archived
+    protected static final Integer[] UnsentStatuses = new Integer[] {
+            MessageSendStatus.Created.ordinal(),
+            MessageSendStatus.Compressing.ordinal(),
+            MessageSendStatus.WillUpload.ordinal(),
+            MessageSendStatus.Uploading.ordinal(),
+            MessageSendStatus.DidUpload.ordinal(),
+            MessageSendStatus.WillSend.ordinal(),
+            MessageSendStatus.Failed.ordinal(),
+    };
+
+    public boolean isEnabled() {
+        return ChatSDK.config().messageRetentionCount > 0 || ChatSDK.config().messageRetentionDays > 0;
+    }
+
+    @Override
+    public void didStart() {
+
+    }
+
+    /**
+     * Archive when the app goes into the background so the work doesn't compete with the UI
+     */
+    @Override
+    public void didStop() {
+        if (isEnabled() && ChatSDK.auth() != null && ChatSDK.auth().isAuthenticated()) {
+            archiveAllAsync().subscribe(ChatSDK.events());
+        }
+    }
+
+    public Completable archiveAllAsync() {
+        return Completable.defer(() -> {
+            archiveAll();
+            return Completable.complete();
+        }).subscribeOn(RX.dbWrite());
+    }
+
+    public Completable archiveAsync(Thread thread) {
+        return Completable.defer(() -> {
+            archive(thread);
+            return Completable.complete();
+        }).subscribeOn(RX.dbWrite());
+    }
+
+    public void archiveAll() {
+        if (!isEnabled()) {
+            return;
+        }
+        for (Thread thread : daoSession.getThreadDao().loadAll()) {
+            try {
+                archive(thread);
+            } catch (Exception e) {
+                Logger.error(e, "Failed to archive messages for thread: " + thread.getEntityID());
+            }
+        }
+    }
+
+    /**
+     * Archive the thread's messages that are outside the retention window in batches
+     * @return the number of messages that were removed from the database
+     */
+    public int archive(Thread thread) throws IOException, JSONException {
+        int retentionCount = ChatSDK.config().messageRetentionCount;
+        int retentionDays = ChatSDK.config().messageRetentionDays;
+        if (thread.getId() == null || thread.getEntityID() == null || (retentionCount <= 0 && retentionDays <= 0)) {
+            return 0;
+        }
+
+        long count = thread.getMessageCount();
+        long excess = retentionCount > 0 ? count - retentionCount : count;
+        if (excess <= 0) {
+            return 0;
+        }
+
+        long cutoff = retentionDays > 0 ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays) : Long.MAX_VALUE;
+        int batchSize = Math.max(1, ChatSDK.config().messageArchiveBatchSize);
+
+        File file = archiveFile(thread);
+        ArchiveIndex index = index(file);
+
+        int total = 0;
+        while (excess > 0) {
+            List<Message> messages = daoSession.getMessageDao().queryBuilder()
+                    .where(MessageDao.Properties.ThreadId.eq(thread.getId()))
+                    .where(MessageDao.Properties.Date.lt(cutoff))
+                    .where(MessageDao.Properties.EntityID.isNotNull())
+                    .whereOr(MessageDao.Properties.Status.isNull(), MessageDao.Properties.Status.notIn((Object[]) UnsentStatuses))
+                    .orderAsc(MessageDao.Properties.Date, MessageDao.Properties.Id)
+                    .limit((int) Math.min(batchSize, excess))
+                    .list();
+
+            if (messages.isEmpty()) {
+                break;
+            }
+
+            // Messages that were restored and are being archived again are already in the file
+            long from = messages.get(0).getDate().getTime();
+            long to = messages.get(messages.size() - 1).getDate().getTime();
+            Set<String> archived = archivedEntityIDs(file, index, from, to);
+
+            List<JSONObject> records = new ArrayList<>();
+            for (Message message : messages) {
+                if (!archived.contains(message.getEntityID())) {
+                    records.add(serialize(message));
+                }
+            }
+
+            // The rows are only deleted once the records are safely on disk
+            append(file, index, records);
+
+            remove(thread, messages);
+
+            total += messages.size();
+            excess -= messages.size();
+
+            if (messages.size() < batchSize) {
+                break;
+            }
+        }
+
+        if (total > 0) {
+            Logger.debug("Archived " + total + " messages for thread: " + thread.getEntityID());
+        }
+        return total;
+    }
+
+    protected void remove(Thread thread, List<Message> messages) {
+        daoSession.runInTx(() -> {
+            Set<Long> ids = new HashSet<>();
+            List<MessageMetaValue> metaValues = new ArrayList<>();
+            List<ReadReceiptUserLink> links = new ArrayList<>();
+            for (Message message : messages) {
+                ids.add(message.getId());
+                metaValues.addAll(message.getMetaValues());
+                links.addAll(message.getReadReceiptLinks());
+            }
+
+            daoSession.getMessageMetaValueDao().deleteInTx(metaValues);
+            daoSession.getReadReceiptUserLinkDao().deleteInTx(links);
+            daoSession.getMessageDao().deleteInTx(messages);
+            DaoCore.searchIndex.remove(ids);
+
+            // The oldest message left is now the start of the thread
+            List<Message> oldest = ChatSDK.db().fetchMessagesPage(thread.getId(), null, null, DaoCore.ORDER_ASC, 1);
+            if (!oldest.isEmpty() && oldest.get(0).getPreviousMessageId() != null) {
+                oldest.get(0).setPreviousMessageId(null);
+                oldest.get(0).update();
+            }
+
+            if (ids.contains(thread.getTailMessageId())) {
+                thread.setTailMessageId(null);
+                thread.update();
+            }
+
+            thread.resetMessages();
+            thread.updateSummary();
+        });
+    }
+
+    public Single<List<Message>> loadArchivedMessagesAsync(Thread thread, @Nullable Date before, int limit) {
+        return Single.defer(() -> Single.just(loadArchivedMessages(thread, before, limit))).subscribeOn(RX.dbWrite());
+    }
+
+    /**
+     * Restore a page of archived messages to the database. The messages are linked in
+     * front of the oldest message that is still stored locally
+     * @param before only return messages older than this date or null to start with the newest
+     * @return the restored messages, newest first
+     */
+    public List<Message> loadArchivedMessages(Thread thread, @Nullable Date before, int limit) throws IOException, JSONException {
+        List<JSONObject> records = read(archiveFile(thread), before, Math.max(1, limit));
+        if (records.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return restore(thread, records);
+    }
+
+    protected List<Message> restore(Thread thread, List<JSONObject> records) throws JSONException {
+        // Oldest first
+        Collections.sort(records, (o1, o2) -> Long.compare(o1.optLong(DateKey), o2.optLong(DateKey)));
+
+        Set<String> userEntityIDs = new HashSet<>();
+        for (JSONObject record : records) {
+            if (record.has(FromKey)) {
+                userEntityIDs.add(record.getString(FromKey));
+            }
+            JSONObject read = record.optJSONObject(ReadKey);
+            if (read != null) {
+                Iterator<String> keys = read.keys();
+                while (keys.hasNext()) {
+                    userEntityIDs.add(keys.next());
+                }
+            }
+        }
+
+        return ChatSDK.db().callInTransaction(() -> {
+            Map<String, User> users = ChatSDK.db().fetchOrCreateEntitiesWithEntityIDs(User.class, userEntityIDs);
+
+            List<Message> oldest = ChatSDK.db().fetchMessagesPage(thread.getId(), null, null, DaoCore.ORDER_ASC, 1);
+            Message next = oldest.isEmpty() ? null : oldest.get(0);
+
+            List<Message> messages = new ArrayList<>();
+            List<MessageMetaValue> metaValues = new ArrayList<>();
+            List<ReadReceiptUserLink> links = new ArrayList<>();
+
+            for (JSONObject record : records) {
+                Message message = DaoCore.fetchEntityWithEntityID(Message.class, record.getString(EntityIDKey));
+                if (message == null) {
+                    message = ChatSDK.db().fetchOrCreateEntityWithEntityID(Message.class, record.getString(EntityIDKey));
+                    message.setDate(new Date(record.getLong(DateKey)));
+                    message.setType(record.optInt(TypeKey));
+                    message.setStatus(record.has(StatusKey) ? record.getInt(StatusKey) : null);
+                    message.setThreadId(thread.getId());
+                    message.setSender(users.get(record.optString(FromKey)));
+
+                    JSONObject meta = record.optJSONObject(MetaKey);
+                    if (meta != null) {
+                        Iterator<String> keys = meta.keys();
+                        while (keys.hasNext()) {
+                            String key = keys.next();
+                            JSONArray value = meta.getJSONArray(key);
+                            metaValues.add(new MessageMetaValue(null, key, value.isNull(0) ? null : value.getString(0), value.isNull(1) ? null : value.getInt(1), message.getId()));
+                        }
+                    }
+
+                    JSONObject read = record.optJSONObject(ReadKey);
+                    if (read != null) {
+                        Iterator<String> keys = read.keys();
+                        while (keys.hasNext()) {
+                            String key = keys.next();
+                            User user = users.get(key);
+                            JSONArray value = read.getJSONArray(key);
+                            if (user != null) {
+                                links.add(new ReadReceiptUserLink(null, message.getId(), user.getId(), value.getInt(0), new Date(value.getLong(1))));
+                            }
+                        }
+                    }
+                }
+                if (thread.getId().equals(message.getThreadId())) {
+                    messages.add(message);
+                }
+            }
+
+            daoSession.getMessageMetaValueDao().insertInTx(metaValues);
+            daoSession.getReadReceiptUserLinkDao().insertInTx(links);
+
+            Set<Long> restored = new HashSet<>();
+            for (MessageMetaValue value : metaValues) {
+                restored.add(value.getMessageId());
+            }
+            DaoCore.searchIndex.index(restored);
+
+            // Link the page in front of the oldest message that is stored locally
+            Message previous = null;
+            for (Message message : messages) {
+                message.setPreviousMessageId(previous != null ? previous.getId() : null);
+                if (previous != null) {
+                    previous.setNextMessageId(message.getId());
+                }
+                previous = message;
+            }
+            if (previous != null && next != null && !messages.contains(next) && !next.getDate().before(previous.getDate())) {
+                previous.setNextMessageId(next.getId());
+                next.setPreviousMessageId(previous.getId());
+                next.update();
+            }
+            daoSession.getMessageDao().updateInTx(messages);
+
+            thread.resetMessages();
+
+            Collections.reverse(messages);
+            return messages;
+        });
+    }
+
+    protected JSONObject serialize(Message message) throws JSONException {
+        JSONObject record = new JSONObject();
+        record.put(EntityIDKey, message.getEntityID());
+        record.put(DateKey, message.getDate().getTime());
+        record.put(TypeKey, message.getType());
+        record.put(StatusKey, message.getStatus());
+        if (message.getSender() != null) {
+            record.put(FromKey, message.getSender().getEntityID());
+        }
+
+        JSONObject meta = new JSONObject();
+        for (MessageMetaValue value : message.getMetaValues()) {
+            if (value.getKey() != null) {
+                meta.put(value.getKey(), new JSONArray().put(value.getValue() != null ? value.getValue() : JSONObject.NULL).put(value.getType() != null ? value.getType() : JSONObject.NULL));
+            }
+        }
+        record.put(MetaKey, meta);
+
+        JSONObject read = new JSONObject();
+        for (ReadReceiptUserLink link : message.getReadReceiptLinks()) {
+            User user = link.getUser();
+            if (user != null && user.getEntityID() != null) {
+                read.put(user.getEntityID(), new JSONArray().put(link.getStatus() != null ? link.getStatus() : 0).put(link.getDate() != null ? link.getDate().getTime() : 0));
+            }
+        }
+        record.put(ReadKey, read);
+
+        return record;
+    }
+
+    /**
+     * Write the records as a new gzip member at the end of the file and add it to the index.
+     * If the write fails the file is truncated back to its previous length so the earlier
+     * members stay readable
+     */
+    protected void append(File file, ArchiveIndex index, List<JSONObject> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        long length = file.length();
+        FileOutputStream stream = new FileOutputStream(file, true);
+        try {
+            GZIPOutputStream gzip = new GZIPOutputStream(stream);
+            Writer writer = new OutputStreamWriter(gzip, "UTF-8");
+            for (JSONObject record : records) {
+                writer.write(record.toString());
+                writer.write('\n');
+            }
+            writer.flush();
+            gzip.finish();
+            stream.flush();
+            stream.getFD().sync();
+            stream.close();
+
+            long minDate = Long.MAX_VALUE;
+            long maxDate = Long.MIN_VALUE;
+            for (JSONObject record : records) {
+                minDate = Math.min(minDate, record.optLong(DateKey));
+                maxDate = Math.max(maxDate, record.optLong(DateKey));
+            }
+            index.add(new ArchiveIndex.Entry(length, file.length() - length, minDate, maxDate));
+        } catch (IOException e) {
+            stream.close();
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(length);
+            } finally {
+                raf.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * The newest records older than the date. Members are read newest first and only until
+     * no remaining member can hold a newer record than the ones already found. Records that
+     * appear more than once because they were archived again are only returned once
+     */
+    protected List<JSONObject> read(File file, @Nullable Date before, int limit) throws IOException {
+        PriorityQueue<JSONObject> newest = new PriorityQueue<>(limit + 1, (o1, o2) -> Long.compare(o1.optLong(DateKey), o2.optLong(DateKey)));
+        Set<String> seen = new HashSet<>();
+
+        long end = before != null ? before.getTime() - 1 : Long.MAX_VALUE;
+
+        List<ArchiveIndex.Entry> entries = new ArrayList<>();
+        for (ArchiveIndex.Entry entry : index(file).getEntries()) {
+            if (entry.overlaps(Long.MIN_VALUE, end)) {
+                entries.add(entry);
+            }
+        }
+        Collections.sort(entries, (o1, o2) -> Long.compare(o2.maxDate, o1.maxDate));
+
+        for (ArchiveIndex.Entry entry : entries) {
+            if (newest.size() >= limit && entry.maxDate < newest.peek().optLong(DateKey)) {
+                break;
+            }
+            scan(file, entry.offset, entry.length, record -> {
+                if (record.optLong(DateKey) <= end && seen.add(record.optString(EntityIDKey))) {
+                    newest.add(record);
+                    if (newest.size() > limit) {
+                        newest.poll();
+                    }
+                }
+            });
+        }
+
+        return new ArrayList<>(newest);
+    }
+
+    /**
+     * The entity IDs of the archived records with a date in the range
+     */
+    protected Set<String> archivedEntityIDs(File file, ArchiveIndex index, long from, long to) throws IOException {
+        Set<String> ids = new HashSet<>();
+        for (ArchiveIndex.Entry entry : index.getEntries()) {
+            if (entry.overlaps(from, to)) {
+                scan(file, entry.offset, entry.length, record -> ids.add(record.optString(EntityIDKey)));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Read the archive's index. Any part of the archive the index doesn't cover, for example
+     * an archive written before there was an index, is scanned once and added as one entry
+     */
+    protected ArchiveIndex index(File file) throws IOException {
+        ArchiveIndex index = ArchiveIndex.read(file);
+        long length = file.exists() ? file.length() : 0;
+        if (index.end() > length) {
+            // The archive was replaced or truncated
+            index.clear();
+        }
+        long offset = index.end();
+        if (offset < length) {
+            final long[] range = new long[] {Long.MAX_VALUE, Long.MIN_VALUE};
+            scan(file, offset, length - offset, record -> {
+                range[0] = Math.min(range[0], record.optLong(DateKey));
+                range[1] = Math.max(range[1], record.optLong(DateKey));
+            });
+            index.add(new ArchiveIndex.Entry(offset, length - offset, range[0], range[1]));
+        }
+        return index;
+    }
+
+    protected interface RecordConsumer {
+        void accept(JSONObject record);
+    }
+
+    /**
+     * Read every record in part of the archive. The part has to start at the beginning of a
+     * member and can hold more than one member. A damaged member stops the scan but the
+     * records that were read before it are still returned
+     */
+    protected void scan(File file, long offset, long length, RecordConsumer consumer) throws IOException {
+        if (!file.exists() || length <= 0) {
+            return;
+        }
+        FileInputStream stream = new FileInputStream(file);
+        BufferedReader reader = null;
+        try {
+            stream.getChannel().position(offset);
+            // The gzip header is read here so a damaged first member fails straight away
+            reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new RangeInputStream(stream, length)), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    try {
+                        consumer.accept(new JSONObject(line));
+                    } catch (JSONException e) {
+                        Logger.warn("Skipping damaged archive record in: " + file.getName());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Logger.error(e, "Archive is damaged: " + file.getName());
+        } finally {
+            if (reader != null) {
+                reader.close();
+            } else {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * Stops reading after a number of bytes so a gzip stream only sees the members in range
+     */
+    protected static class RangeInputStream extends FilterInputStream {
+
+        protected long remaining;
+
+        protected RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = super.read(b, off, (int) Math.min(len, remaining));
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    public File archiveDirectory() {
+        FileManager fileManager = ChatSDK.shared().fileManager();
+        return fileManager.subdir(fileManager.storage(), archive);
+    }
+
+    public File archiveFile(Thread thread) {
+        return new File(archiveDirectory(), thread.getEntityID().replaceAll("[^A-Za-z0-9_-]", "_") + extension);
+    }
+
+    public boolean hasArchive(Thread thread) {
+        return thread.getEntityID() != null && archiveFile(thread).length() > 0;
+    }
+
+    public void deleteArchive(Thread thread) {
+        if (thread.getEntityID() != null) {
+            File file = archiveFile(thread);
+            if (file.exists() && !file.delete()) {
+                Logger.warn("Unable to delete archive: " + file.getName());
+            }
+            File index = ArchiveIndex.indexFile(file);
+            if (index.exists() && !index.delete()) {
+                Logger.warn("Unable to delete archive index: " + index.getName());
+            }
+        }
+    }
+
+}
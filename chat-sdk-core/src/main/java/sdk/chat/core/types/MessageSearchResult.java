@@ -0,0 +1,31 @@
+package sdk.chat.core.types;
+
+/**
+ * A message that matched a local text search
+ */
+public class MessageSearchResult {
+
+    public long threadId;
+    public long messageId;
+
+    // Part of the message text around the match with the matched words in bold
+    public String snippet;
+
+    public MessageSearchResult(long threadId, long messageId, String snippet) {
+        this.threadId = threadId;
+        this.messageId = messageId;
+        this.snippet = snippet;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public long getMessageId() {
+        return messageId;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+}
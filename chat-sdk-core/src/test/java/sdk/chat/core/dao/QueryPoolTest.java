@@ -0,0 +1,190 @@
+package sdk.chat.core.dao;
+
+import android.database.Cursor;
+
+import org.greenrobot.greendao.database.Database;
+import org.greenrobot.greendao.database.DatabaseStatement;
+import org.greenrobot.greendao.identityscope.IdentityScopeType;
+import org.greenrobot.greendao.query.Query;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class QueryPoolTest {
+
+    protected QueryPool pool;
+
+    @Before
+    public void setUp() {
+        // Queries are only built here, never run, so the database is never used
+        pool = new QueryPool(new DaoMaster(new UnusedDatabase()).newSession(IdentityScopeType.None));
+    }
+
+    @Test
+    public void olderPageIsBoundToTheAnchor() throws Exception {
+        String sql = bind(pool.messagesPage(7L, new Date(1000), 5L, DaoCore.ORDER_DESC, 20));
+
+        assertContains(sql, "T.\"THREAD_ID\"=7");
+        assertContains(sql, "T.\"DATE\"<1000 OR (T.\"DATE\"=1000 AND T.\"_id\"<5)");
+        assertContains(sql, "ORDER BY T.'DATE' DESC,T.'_id' DESC");
+        assertTrue(sql, sql.endsWith("LIMIT 20"));
+    }
+
+    @Test
+    public void newerPageIsBoundToTheAnchor() throws Exception {
+        String sql = bind(pool.messagesPage(7L, new Date(1000), 5L, DaoCore.ORDER_ASC, 20));
+
+        assertContains(sql, "T.\"DATE\">1000 OR (T.\"DATE\"=1000 AND T.\"_id\">5)");
+        assertContains(sql, "ORDER BY T.'DATE' ASC,T.'_id' ASC");
+    }
+
+    @Test
+    public void anchorWithoutIdSkipsTheAnchorDate() throws Exception {
+        assertContains(bind(pool.messagesPage(7L, new Date(1000), null, DaoCore.ORDER_DESC, 20)),
+                "T.\"DATE\"<1000 OR (T.\"DATE\"=1000 AND T.\"_id\"<" + Long.MIN_VALUE + ")");
+        assertContains(bind(pool.messagesPage(7L, new Date(1000), null, DaoCore.ORDER_ASC, 20)),
+                "T.\"DATE\">1000 OR (T.\"DATE\"=1000 AND T.\"_id\">" + Long.MAX_VALUE + ")");
+    }
+
+    @Test
+    public void missingAnchorStartsFromTheEnd() throws Exception {
+        assertContains(bind(pool.messagesPage(7L, null, null, DaoCore.ORDER_DESC, 20)),
+                "T.\"DATE\"<" + Long.MAX_VALUE + " OR (T.\"DATE\"=" + Long.MAX_VALUE + " AND T.\"_id\"<" + Long.MAX_VALUE + ")");
+        assertContains(bind(pool.messagesPage(7L, null, null, DaoCore.ORDER_ASC, 20)),
+                "T.\"DATE\">" + Long.MIN_VALUE + " OR (T.\"DATE\"=" + Long.MIN_VALUE + " AND T.\"_id\">" + Long.MIN_VALUE + ")");
+    }
+
+    @Test
+    public void pageSizeOfZeroHasNoLimit() throws Exception {
+        assertTrue(bind(pool.messagesPage(7L, null, null, DaoCore.ORDER_DESC, 0)).endsWith("LIMIT -1"));
+    }
+
+    @Test
+    public void queryIsReusedAndRebound() throws Exception {
+        Query<Message> first = pool.messagesPage(7L, new Date(1000), 5L, DaoCore.ORDER_DESC, 20);
+        Query<Message> second = pool.messagesPage(8L, new Date(2000), 6L, DaoCore.ORDER_DESC, 10);
+
+        // The same copy is returned for the same thread, with the new parameters
+        assertSame(first, second);
+
+        String sql = bind(second);
+        assertContains(sql, "T.\"THREAD_ID\"=8");
+        assertContains(sql, "T.\"DATE\"<2000 OR (T.\"DATE\"=2000 AND T.\"_id\"<6)");
+        assertTrue(sql, sql.endsWith("LIMIT 10"));
+
+        assertNotSame(second, pool.messagesPage(8L, new Date(2000), 6L, DaoCore.ORDER_ASC, 10));
+    }
+
+    @Test
+    public void messagesForThreadIsBoundToTheRange() throws Exception {
+        String sql = bind(pool.messagesForThread(7L, new Date(1000), new Date(2000), 0));
+
+        assertContains(sql, "T.\"THREAD_ID\"=7");
+        assertContains(sql, "T.\"DATE\"<2000");
+        assertContains(sql, "T.\"DATE\">1000");
+        assertTrue(sql, sql.endsWith("LIMIT -1"));
+    }
+
+    protected static void assertContains(String sql, String expected) {
+        assertTrue(sql, sql.contains(expected));
+    }
+
+    /**
+     * The query's SQL with each parameter in place of its placeholder
+     */
+    protected static String bind(Query<?> query) throws Exception {
+        String sql = (String) field(query, "sql");
+        String[] parameters = (String[]) field(query, "parameters");
+
+        StringBuilder builder = new StringBuilder();
+        int index = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                builder.append(parameters[index++]);
+            } else {
+                builder.append(c);
+            }
+        }
+        assertEquals(parameters.length, index);
+        return builder.toString();
+    }
+
+    protected static Object field(Object object, String name) throws Exception {
+        for (Class<?> c = object.getClass(); c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                return field.get(object);
+            } catch (NoSuchFieldException e) {
+                // Keep looking in the superclass
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+
+    protected static class UnusedDatabase implements Database {
+
+        @Override
+        public Cursor rawQuery(String sql, String[] selectionArgs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void execSQL(String sql) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void beginTransaction() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void endTransaction() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean inTransaction() {
+            return false;
+        }
+
+        @Override
+        public void setTransactionSuccessful() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void execSQL(String sql, Object[] bindArgs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public DatabaseStatement compileStatement(String sql) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isDbLockedByCurrentThread() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+
+        }
+
+        @Override
+        public Object getRawDatabase() {
+            return null;
+        }
+    }
+
+}
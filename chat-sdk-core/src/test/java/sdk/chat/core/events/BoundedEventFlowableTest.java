@@ -0,0 +1,157 @@
+package sdk.chat.core.events;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subscribers.TestSubscriber;
+import sdk.chat.core.dao.Thread;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedEventFlowableTest {
+
+    protected EventOverflowMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new EventOverflowMetrics();
+    }
+
+    @Test
+    public void bufferDropsTheNewEventWhenFull() {
+        BoundedEventFlowable.EventQueue queue = new BoundedEventFlowable.EventQueue(EventOverflowPolicy.buffer(2), metrics);
+
+        NetworkEvent first = NetworkEvent.threadAdded(thread(1));
+        NetworkEvent second = NetworkEvent.threadAdded(thread(2));
+        queue.offer(first);
+        queue.offer(second);
+        queue.offer(NetworkEvent.threadAdded(thread(3)));
+
+        assertSame(first, queue.poll());
+        assertSame(second, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(1, metrics.getDroppedCount(EventType.ThreadAdded));
+    }
+
+    @Test
+    public void dropOldestDropsTheFirstEventWhenFull() {
+        BoundedEventFlowable.EventQueue queue = new BoundedEventFlowable.EventQueue(EventOverflowPolicy.dropOldest(2), metrics);
+
+        NetworkEvent second = NetworkEvent.threadAdded(thread(2));
+        NetworkEvent third = NetworkEvent.threadRemoved(thread(3));
+        queue.offer(NetworkEvent.threadAdded(thread(1)));
+        queue.offer(second);
+        queue.offer(third);
+
+        assertSame(second, queue.poll());
+        assertSame(third, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(1, metrics.getDroppedCount(EventType.ThreadAdded));
+        assertEquals(0, metrics.getDroppedCount(EventType.ThreadRemoved));
+    }
+
+    @Test
+    public void latestPerKeyReplacesTheQueuedEvent() {
+        BoundedEventFlowable.EventQueue queue = new BoundedEventFlowable.EventQueue(EventOverflowPolicy.latestPerKey(2), metrics);
+
+        Thread thread = thread(1);
+        NetworkEvent other = NetworkEvent.threadDetailsUpdated(thread(2));
+        NetworkEvent latest = NetworkEvent.threadDetailsUpdated(thread);
+        queue.offer(NetworkEvent.threadDetailsUpdated(thread));
+        queue.offer(other);
+        queue.offer(latest);
+
+        // The replacement keeps the position of the original
+        assertSame(latest, queue.poll());
+        assertSame(other, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(1, metrics.getCoalescedCount(EventType.ThreadDetailsUpdated));
+        assertEquals(0, metrics.getDroppedCount(EventType.ThreadDetailsUpdated));
+    }
+
+    @Test
+    public void latestPerKeyDropsTheOldestKeyWhenFull() {
+        BoundedEventFlowable.EventQueue queue = new BoundedEventFlowable.EventQueue(EventOverflowPolicy.latestPerKey(2), metrics);
+
+        NetworkEvent second = NetworkEvent.threadDetailsUpdated(thread(2));
+        NetworkEvent third = NetworkEvent.threadDetailsUpdated(thread(3));
+        queue.offer(NetworkEvent.threadDetailsUpdated(thread(1)));
+        queue.offer(second);
+        queue.offer(third);
+
+        assertSame(second, queue.poll());
+        assertSame(third, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(1, metrics.getDroppedCount(EventType.ThreadDetailsUpdated));
+    }
+
+    @Test
+    public void clearEmptiesTheQueue() {
+        BoundedEventFlowable.EventQueue queue = new BoundedEventFlowable.EventQueue(EventOverflowPolicy.latestPerKey(2), metrics);
+        queue.offer(NetworkEvent.threadDetailsUpdated(thread(1)));
+        queue.clear();
+        assertNull(queue.poll());
+
+        queue = new BoundedEventFlowable.EventQueue(EventOverflowPolicy.buffer(2), metrics);
+        queue.offer(NetworkEvent.threadDetailsUpdated(thread(1)));
+        queue.clear();
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void eventsAreOnlyDeliveredWhenRequested() {
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<NetworkEvent> source = PublishSubject.create();
+
+        TestSubscriber<NetworkEvent> subscriber = new BoundedEventFlowable(source, EventOverflowPolicy.buffer(2), scheduler, metrics).test(0);
+
+        NetworkEvent first = NetworkEvent.threadAdded(thread(1));
+        NetworkEvent second = NetworkEvent.threadAdded(thread(2));
+        source.onNext(first);
+        source.onNext(second);
+        source.onNext(NetworkEvent.threadAdded(thread(3)));
+        scheduler.triggerActions();
+
+        subscriber.assertEmpty();
+        assertEquals(1, metrics.getDroppedCount(EventType.ThreadAdded));
+
+        subscriber.request(1);
+        scheduler.triggerActions();
+        subscriber.assertValuesOnly(first);
+
+        subscriber.request(5);
+        scheduler.triggerActions();
+        subscriber.assertValuesOnly(first, second);
+    }
+
+    @Test
+    public void cancelStopsTheSource() {
+        TestScheduler scheduler = new TestScheduler();
+        PublishSubject<NetworkEvent> source = PublishSubject.create();
+
+        TestSubscriber<NetworkEvent> subscriber = new BoundedEventFlowable(source, EventOverflowPolicy.buffer(2), scheduler, metrics).test(0);
+        assertTrue(source.hasObservers());
+
+        source.onNext(NetworkEvent.threadAdded(thread(1)));
+        subscriber.cancel();
+        assertFalse(source.hasObservers());
+
+        subscriber.request(1);
+        scheduler.triggerActions();
+        subscriber.assertEmpty();
+    }
+
+    protected static Thread thread(long id) {
+        Thread thread = new Thread();
+        thread.setId(id);
+        thread.setEntityID("thread" + id);
+        return thread;
+    }
+
+}
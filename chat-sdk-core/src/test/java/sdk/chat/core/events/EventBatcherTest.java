@@ -0,0 +1,151 @@
+package sdk.chat.core.events;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.PublishSubject;
+import sdk.chat.core.dao.Message;
+import sdk.chat.core.dao.Thread;
+import sdk.chat.core.dao.User;
+import sdk.chat.core.types.MessageSendStatus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class EventBatcherTest {
+
+    protected TestScheduler scheduler;
+    protected EventBatcher batcher;
+
+    @Before
+    public void setUp() {
+        scheduler = new TestScheduler();
+        batcher = new EventBatcher(100, 10, scheduler);
+    }
+
+    @Test
+    public void latestEventKeepsThePositionOfTheFirst() {
+        Thread a = thread(1);
+        Thread b = thread(2);
+
+        NetworkEvent first = NetworkEvent.threadDetailsUpdated(a);
+        NetworkEvent other = NetworkEvent.threadDetailsUpdated(b);
+        NetworkEvent latest = NetworkEvent.threadDetailsUpdated(a);
+
+        assertEquals(Arrays.asList(latest, other), batcher.combine(Arrays.asList(first, other, latest)));
+
+        assertEquals(3, batcher.getReceivedCount());
+        assertEquals(2, batcher.getEmittedCount());
+        assertEquals(1, batcher.getCoalescedCount());
+        assertEquals(1, batcher.getBatchCount());
+    }
+
+    @Test
+    public void eventsWithDifferentKeysAreKept() {
+        Thread thread = thread(1);
+        Message message = message(1, thread, user(1));
+        Message other = message(2, thread, user(1));
+
+        List<NetworkEvent> events = Arrays.asList(
+                NetworkEvent.messageAdded(message),
+                NetworkEvent.messageUpdated(message),
+                NetworkEvent.messageUpdated(other),
+                NetworkEvent.threadUsersChanged(thread, user(2)),
+                NetworkEvent.threadUsersChanged(thread, user(3)));
+
+        assertSame(events, batcher.combine(events));
+        assertEquals(0, batcher.getCoalescedCount());
+    }
+
+    @Test
+    public void sendStatusEventsAreOnlyCombinedWithTheSameStatus() {
+        Message message = message(1, thread(1), user(1));
+
+        NetworkEvent uploading = NetworkEvent.messageSendStatusChanged(message, MessageSendStatus.Uploading, null);
+        NetworkEvent progress = NetworkEvent.messageSendStatusChanged(message, MessageSendStatus.Uploading, null);
+        NetworkEvent sent = NetworkEvent.messageSendStatusChanged(message, MessageSendStatus.Sent, null);
+
+        assertEquals(Arrays.asList(progress, sent), batcher.combine(Arrays.asList(uploading, progress, sent)));
+    }
+
+    @Test
+    public void unsavedEntitiesAreComparedByIdentity() {
+        Thread a = new Thread();
+        Thread b = new Thread();
+
+        NetworkEvent first = NetworkEvent.threadDetailsUpdated(a);
+        NetworkEvent other = NetworkEvent.threadDetailsUpdated(b);
+        NetworkEvent latest = NetworkEvent.threadDetailsUpdated(a);
+
+        assertEquals(Arrays.asList(latest, other), batcher.combine(Arrays.asList(first, other, latest)));
+    }
+
+    @Test
+    public void batchIsEmittedWhenTheWindowEnds() {
+        PublishSubject<NetworkEvent> source = PublishSubject.create();
+        TestObserver<List<NetworkEvent>> observer = source.compose(batcher).test();
+
+        Thread thread = thread(1);
+        NetworkEvent first = NetworkEvent.threadDetailsUpdated(thread);
+        NetworkEvent latest = NetworkEvent.threadDetailsUpdated(thread);
+        source.onNext(first);
+        source.onNext(latest);
+
+        scheduler.advanceTimeBy(99, TimeUnit.MILLISECONDS);
+        observer.assertNoValues();
+
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(1);
+        assertEquals(Arrays.asList(latest), observer.values().get(0));
+
+        // Empty windows aren't emitted
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        observer.assertValueCount(1);
+    }
+
+    @Test
+    public void batchIsEmittedWhenItIsFull() {
+        batcher = new EventBatcher(100, 2, scheduler);
+
+        PublishSubject<NetworkEvent> source = PublishSubject.create();
+        TestObserver<List<NetworkEvent>> observer = source.compose(batcher).test();
+
+        NetworkEvent first = NetworkEvent.threadDetailsUpdated(thread(1));
+        NetworkEvent second = NetworkEvent.threadDetailsUpdated(thread(2));
+        source.onNext(first);
+        source.onNext(second);
+
+        observer.assertValueCount(1);
+        assertEquals(Arrays.asList(first, second), observer.values().get(0));
+    }
+
+    protected static Thread thread(long id) {
+        Thread thread = new Thread();
+        thread.setId(id);
+        thread.setEntityID("thread" + id);
+        return thread;
+    }
+
+    protected static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setEntityID("user" + id);
+        return user;
+    }
+
+    protected static Message message(long id, Thread thread, User sender) {
+        Message message = new Message();
+        message.setId(id);
+        message.setEntityID("message" + id);
+        message.setThread(thread);
+        message.setSender(sender);
+        return message;
+    }
+
+}
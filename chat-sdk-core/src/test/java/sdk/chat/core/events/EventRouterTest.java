@@ -0,0 +1,141 @@
+package sdk.chat.core.events;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.reactivex.observers.TestObserver;
+import sdk.chat.core.dao.Message;
+import sdk.chat.core.dao.Thread;
+import sdk.chat.core.dao.User;
+
+import static org.junit.Assert.assertEquals;
+
+public class EventRouterTest {
+
+    protected EventRouter router;
+
+    @Before
+    public void setUp() {
+        router = new EventRouter();
+    }
+
+    @Test
+    public void threadEventsOnlyGoToThatThread() {
+        Thread a = thread(1);
+        Thread b = thread(2);
+
+        TestObserver<NetworkEvent> forA = router.forThread(a.getEntityID()).test();
+        TestObserver<NetworkEvent> forB = router.forThread(b.getEntityID()).test();
+
+        NetworkEvent event = NetworkEvent.threadDetailsUpdated(a);
+        router.accept(event);
+
+        forA.assertValuesOnly(event);
+        forB.assertEmpty();
+    }
+
+    @Test
+    public void onlyTheRequestedTypesAreDelivered() {
+        Thread thread = thread(1);
+
+        TestObserver<NetworkEvent> observer = router.forThread(thread.getEntityID(), EventType.ThreadRead, EventType.ThreadRemoved).test();
+
+        NetworkEvent read = NetworkEvent.threadRead(thread);
+        NetworkEvent removed = NetworkEvent.threadRemoved(thread);
+        router.accept(NetworkEvent.threadDetailsUpdated(thread));
+        router.accept(read);
+        router.accept(removed);
+
+        observer.assertValuesOnly(read, removed);
+    }
+
+    @Test
+    public void messageEventsGoToTheMessageThread() {
+        Thread thread = thread(1);
+        Message message = new Message();
+        message.setId(1L);
+        message.setThread(thread);
+
+        TestObserver<NetworkEvent> observer = router.forThread(thread.getEntityID()).test();
+
+        NetworkEvent event = new NetworkEvent(EventType.MessageUpdated, null, message);
+        router.accept(event);
+
+        observer.assertValuesOnly(event);
+    }
+
+    @Test
+    public void userEventsOnlyGoToThatUser() {
+        User a = user(1);
+        User b = user(2);
+
+        TestObserver<NetworkEvent> forA = router.forUser(a.getEntityID()).test();
+        TestObserver<NetworkEvent> forB = router.forUser(b.getEntityID()).test();
+
+        NetworkEvent event = NetworkEvent.userMetaUpdated(a);
+        router.accept(event);
+
+        forA.assertValuesOnly(event);
+        forB.assertEmpty();
+    }
+
+    @Test
+    public void eventForThreadAndUserGoesToBoth() {
+        Thread thread = thread(1);
+        User user = user(1);
+
+        TestObserver<NetworkEvent> forThread = router.forThread(thread.getEntityID()).test();
+        TestObserver<NetworkEvent> forUser = router.forUser(user.getEntityID()).test();
+
+        NetworkEvent event = NetworkEvent.threadUsersChanged(thread, user);
+        router.accept(event);
+
+        forThread.assertValuesOnly(event);
+        forUser.assertValuesOnly(event);
+    }
+
+    @Test
+    public void disposingRemovesTheRoute() {
+        Thread thread = thread(1);
+
+        TestObserver<NetworkEvent> first = router.forThread(thread.getEntityID()).test();
+        TestObserver<NetworkEvent> second = router.forThread(thread.getEntityID()).test();
+        assertEquals(2, router.getRouteCount());
+
+        first.dispose();
+        assertEquals(1, router.getRouteCount());
+
+        NetworkEvent event = NetworkEvent.threadDetailsUpdated(thread);
+        router.accept(event);
+        first.assertEmpty();
+        second.assertValuesOnly(event);
+
+        second.dispose();
+        assertEquals(0, router.getRouteCount());
+        assertEquals(0, router.threadRoutes.size());
+    }
+
+    @Test
+    public void nullEntityIDIsNeverRouted() {
+        TestObserver<NetworkEvent> observer = router.forThread(null).test();
+        assertEquals(0, router.getRouteCount());
+
+        router.accept(NetworkEvent.threadDetailsUpdated(new Thread()));
+        observer.assertEmpty();
+    }
+
+    protected static Thread thread(long id) {
+        Thread thread = new Thread();
+        thread.setId(id);
+        thread.setEntityID("thread" + id);
+        return thread;
+    }
+
+    protected static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setEntityID("user" + id);
+        return user;
+    }
+
+}
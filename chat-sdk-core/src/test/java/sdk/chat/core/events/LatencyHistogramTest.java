@@ -0,0 +1,102 @@
+package sdk.chat.core.events;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+    protected static final double Delta = 1e-9;
+
+    protected LatencyHistogram histogram;
+
+    @Before
+    public void setUp() {
+        histogram = new LatencyHistogram();
+    }
+
+    @Test
+    public void emptyHistogramIsZero() {
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getAverageMillis(), Delta);
+        assertEquals(0, histogram.getMaxMillis(), Delta);
+        assertEquals(0, histogram.getPercentileMillis(50), Delta);
+    }
+
+    @Test
+    public void percentileIsTheUpperBoundOfItsBucket() {
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1.99, histogram.getAverageMillis(), Delta);
+        assertEquals(100, histogram.getMaxMillis(), Delta);
+
+        // 1ms is in the bucket that ends at 1024 microseconds
+        assertEquals(1.024, histogram.getPercentileMillis(0), Delta);
+        assertEquals(1.024, histogram.getPercentileMillis(50), Delta);
+        assertEquals(1.024, histogram.getPercentileMillis(99), Delta);
+
+        // The bucket ends at 131ms but nothing took longer than the maximum
+        assertEquals(100, histogram.getPercentileMillis(100), Delta);
+        assertEquals(100, histogram.getPercentileMillis(200), Delta);
+    }
+
+    @Test
+    public void outOfRangeDurationsAreKept() {
+        histogram.record(-5);
+        histogram.record(TimeUnit.HOURS.toNanos(1));
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(0.001, histogram.getPercentileMillis(50), Delta);
+        assertEquals(TimeUnit.HOURS.toMillis(1), histogram.getPercentileMillis(100), Delta);
+    }
+
+    @Test
+    public void copyDoesNotChange() {
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+        LatencyHistogram copy = histogram.copy();
+
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(8));
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMillis(), Delta);
+        assertEquals(0, histogram.getPercentileMillis(100), Delta);
+
+        assertEquals(1, copy.getCount());
+        assertEquals(2, copy.getMaxMillis(), Delta);
+        assertEquals(2, copy.getAverageMillis(), Delta);
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        List<java.lang.Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final long nanos = TimeUnit.MICROSECONDS.toNanos(t + 1);
+            threads.add(new java.lang.Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    histogram.record(nanos);
+                }
+            }));
+        }
+        for (java.lang.Thread thread : threads) {
+            thread.start();
+        }
+        for (java.lang.Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, histogram.getCount());
+        assertEquals(0.004, histogram.getMaxMillis(), Delta);
+        assertEquals(0.0025, histogram.getAverageMillis(), Delta);
+    }
+
+}
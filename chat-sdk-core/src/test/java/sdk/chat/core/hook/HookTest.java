@@ -0,0 +1,129 @@
+package sdk.chat.core.hook;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import io.reactivex.Completable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.CompletableSubject;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HookTest {
+
+    // One subject per execution, in the order they were started
+    protected List<CompletableSubject> started;
+    protected Hook hook;
+
+    @Before
+    public void setUp() {
+        started = new ArrayList<>();
+        hook = Hook.async(data -> Completable.defer(() -> {
+            CompletableSubject subject = CompletableSubject.create();
+            started.add(subject);
+            return subject;
+        }));
+    }
+
+    @Test
+    public void executionsWaitForARunningOne() {
+        hook.setMaxConcurrent(1);
+
+        TestObserver<Void> first = hook.executeAsync(new HashMap<>()).test();
+        TestObserver<Void> second = hook.executeAsync(new HashMap<>()).test();
+        assertEquals(1, started.size());
+
+        started.get(0).onComplete();
+        first.assertComplete();
+        assertEquals(2, started.size());
+
+        started.get(1).onComplete();
+        second.assertComplete();
+        assertEquals(0, hook.running);
+    }
+
+    @Test
+    public void errorReleasesTheLimit() {
+        hook.setMaxConcurrent(1);
+
+        TestObserver<Void> first = hook.executeAsync(new HashMap<>()).test();
+        TestObserver<Void> second = hook.executeAsync(new HashMap<>()).test();
+
+        Exception error = new Exception();
+        started.get(0).onError(error);
+        first.assertError(error);
+        assertEquals(2, started.size());
+
+        started.get(1).onComplete();
+        second.assertComplete();
+    }
+
+    @Test
+    public void disposingARunningExecutionReleasesTheLimit() {
+        hook.setMaxConcurrent(1);
+
+        TestObserver<Void> first = hook.executeAsync(new HashMap<>()).test();
+        hook.executeAsync(new HashMap<>()).test();
+
+        first.dispose();
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void disposedWaitingExecutionIsSkipped() {
+        hook.setMaxConcurrent(1);
+
+        hook.executeAsync(new HashMap<>()).test();
+        TestObserver<Void> waiting = hook.executeAsync(new HashMap<>()).test();
+        TestObserver<Void> last = hook.executeAsync(new HashMap<>()).test();
+
+        waiting.dispose();
+        started.get(0).onComplete();
+
+        // The disposed execution never starts and the next one takes its place
+        assertEquals(2, started.size());
+        started.get(1).onComplete();
+        last.assertComplete();
+        assertEquals(0, hook.running);
+        assertTrue(hook.waiting.isEmpty());
+    }
+
+    @Test
+    public void limitAllowsThatManyAtOnce() {
+        hook.setMaxConcurrent(2);
+
+        for (int i = 0; i < 5; i++) {
+            hook.executeAsync(new HashMap<>()).test();
+        }
+        assertEquals(2, started.size());
+
+        started.get(0).onComplete();
+        assertEquals(3, started.size());
+    }
+
+    @Test
+    public void noLimitByDefault() {
+        for (int i = 0; i < 5; i++) {
+            hook.executeAsync(new HashMap<>()).test();
+        }
+        assertEquals(5, started.size());
+    }
+
+    @Test
+    public void syncHookRunsTheExecutor() {
+        List<HashMap<String, Object>> executed = new ArrayList<>();
+        HashMap<String, Object> data = new HashMap<>();
+
+        Hook.sync(executed::add).setMaxConcurrent(1).executeAsync(data).test().assertComplete();
+
+        assertEquals(1, executed.size());
+        assertSame(data, executed.get(0));
+    }
+
+}
@@ -0,0 +1,203 @@
+package sdk.chat.core.storage;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MessageArchiverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected MessageArchiver archiver;
+    protected File file;
+
+    @Before
+    public void setUp() throws IOException {
+        archiver = new MessageArchiver();
+        file = new File(folder.getRoot(), "thread" + MessageArchiver.extension);
+    }
+
+    @Test
+    public void rangeStreamStopsAtTheLength() throws IOException {
+        InputStream stream = new MessageArchiver.RangeInputStream(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6}), 4);
+
+        assertEquals(1, stream.read());
+        assertEquals(1, stream.skip(1));
+        assertEquals(2, stream.available());
+
+        byte[] buffer = new byte[10];
+        assertEquals(2, stream.read(buffer, 0, buffer.length));
+        assertArrayEquals(new byte[] {3, 4}, Arrays.copyOf(buffer, 2));
+
+        assertEquals(-1, stream.read());
+        assertEquals(-1, stream.read(buffer, 0, buffer.length));
+        assertEquals(0, stream.skip(1));
+        assertEquals(0, stream.available());
+    }
+
+    @Test
+    public void eachAppendIsIndexedAsAMember() throws IOException, JSONException {
+        ArchiveIndex index = archiver.index(file);
+        archiver.append(file, index, records("a", 10, "b", 20));
+        long firstLength = file.length();
+        archiver.append(file, index, records("c", 30, "d", 40));
+
+        List<ArchiveIndex.Entry> entries = ArchiveIndex.read(file).getEntries();
+        assertEquals(2, entries.size());
+
+        assertEquals(0, entries.get(0).offset);
+        assertEquals(firstLength, entries.get(0).length);
+        assertEquals(10, entries.get(0).minDate);
+        assertEquals(20, entries.get(0).maxDate);
+
+        assertEquals(firstLength, entries.get(1).offset);
+        assertEquals(file.length(), entries.get(1).end());
+        assertEquals(30, entries.get(1).minDate);
+        assertEquals(40, entries.get(1).maxDate);
+    }
+
+    @Test
+    public void membersCanBeScannedTogetherOrAlone() throws IOException, JSONException {
+        ArchiveIndex index = archiver.index(file);
+        archiver.append(file, index, records("a", 10, "b", 20));
+        archiver.append(file, index, records("c", 30));
+
+        assertEquals(Arrays.asList("a", "b", "c"), scan(0, file.length()));
+
+        ArchiveIndex.Entry second = index.getEntries().get(1);
+        assertEquals(Collections.singletonList("c"), scan(second.offset, second.length));
+    }
+
+    @Test
+    public void readReturnsTheNewestRecordsBeforeTheDate() throws IOException, JSONException {
+        ArchiveIndex index = archiver.index(file);
+        archiver.append(file, index, records("a", 10, "b", 20));
+        archiver.append(file, index, records("c", 30, "d", 40));
+        // Archived again, for example after being restored
+        archiver.append(file, index, records("b", 20));
+
+        assertEquals(Arrays.asList("c", "d"), ids(archiver.read(file, null, 2)));
+        assertEquals(Arrays.asList("b", "c"), ids(archiver.read(file, new Date(40), 2)));
+        assertEquals(Arrays.asList("a", "b"), ids(archiver.read(file, new Date(30), 5)));
+        assertTrue(archiver.read(file, new Date(10), 5).isEmpty());
+    }
+
+    @Test
+    public void archiveWithoutAnIndexIsIndexedOnce() throws IOException, JSONException {
+        archiver.append(file, archiver.index(file), records("a", 10, "b", 20));
+        archiver.append(file, archiver.index(file), records("c", 30));
+        assertTrue(ArchiveIndex.indexFile(file).delete());
+
+        List<ArchiveIndex.Entry> entries = archiver.index(file).getEntries();
+        assertEquals(1, entries.size());
+        assertEquals(0, entries.get(0).offset);
+        assertEquals(file.length(), entries.get(0).length);
+        assertEquals(10, entries.get(0).minDate);
+        assertEquals(30, entries.get(0).maxDate);
+
+        assertEquals(1, ArchiveIndex.read(file).getEntries().size());
+        assertEquals(Arrays.asList("a", "b", "c"), ids(archiver.read(file, null, 5)));
+    }
+
+    @Test
+    public void indexIsRebuiltIfTheArchiveIsShorter() throws IOException, JSONException {
+        ArchiveIndex index = archiver.index(file);
+        archiver.append(file, index, records("a", 10));
+        long firstLength = file.length();
+        archiver.append(file, index, records("b", 20));
+
+        truncate(firstLength);
+
+        List<ArchiveIndex.Entry> entries = archiver.index(file).getEntries();
+        assertEquals(1, entries.size());
+        assertEquals(firstLength, entries.get(0).length);
+        assertEquals(Collections.singletonList("a"), ids(archiver.read(file, null, 5)));
+    }
+
+    @Test
+    public void damagedMemberKeepsTheRecordsBeforeIt() throws IOException, JSONException {
+        ArchiveIndex index = archiver.index(file);
+        archiver.append(file, index, records("a", 10, "b", 20));
+        long firstLength = file.length();
+
+        FileOutputStream stream = new FileOutputStream(file, true);
+        stream.write("not a gzip member".getBytes("UTF-8"));
+        stream.close();
+
+        assertEquals(Arrays.asList("a", "b"), scan(0, file.length()));
+        assertTrue(scan(firstLength, file.length() - firstLength).isEmpty());
+    }
+
+    @Test
+    public void emptyOrMissingArchiveHasNoRecords() throws IOException {
+        archiver.append(file, archiver.index(file), new ArrayList<>());
+
+        assertFalse(file.exists());
+        assertTrue(archiver.index(file).getEntries().isEmpty());
+        assertTrue(archiver.read(file, null, 5).isEmpty());
+    }
+
+    /**
+     * Records from pairs of entity ID and date
+     */
+    protected static List<JSONObject> records(Object... values) throws JSONException {
+        List<JSONObject> records = new ArrayList<>();
+        for (int i = 0; i < values.length; i += 2) {
+            JSONObject record = new JSONObject();
+            record.put(MessageArchiver.EntityIDKey, values[i]);
+            record.put(MessageArchiver.DateKey, ((Integer) values[i + 1]).longValue());
+            records.add(record);
+        }
+        return records;
+    }
+
+    protected List<String> scan(long offset, long length) throws IOException {
+        List<String> ids = new ArrayList<>();
+        archiver.scan(file, offset, length, record -> ids.add(record.optString(MessageArchiver.EntityIDKey)));
+        return ids;
+    }
+
+    /**
+     * Entity IDs ordered by date
+     */
+    protected static List<String> ids(List<JSONObject> records) {
+        List<JSONObject> sorted = new ArrayList<>(records);
+        Collections.sort(sorted, (o1, o2) -> Long.compare(o1.optLong(MessageArchiver.DateKey), o2.optLong(MessageArchiver.DateKey)));
+        List<String> ids = new ArrayList<>();
+        for (JSONObject record : sorted) {
+            ids.add(record.optString(MessageArchiver.EntityIDKey));
+        }
+        return ids;
+    }
+
+    protected void truncate(long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+        } finally {
+            raf.close();
+        }
+    }
+
+}
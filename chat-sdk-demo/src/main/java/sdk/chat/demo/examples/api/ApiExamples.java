@@ -179,7 +179,7 @@ public class ApiExamples {
      */
     public void getNotificationWhenFileUploaded (Thread thread) {
         ChatSDK.events().sourceOnMain().filter(NetworkEvent.filterType(EventType.MessageSendStatusUpdated)).subscribe(networkEvent -> {
-            MessageSendProgress progress = (MessageSendProgress) networkEvent.getData().get(NetworkEvent.MessageSendProgress);
+            MessageSendProgress progress = networkEvent.getMessageSendProgress();
             if (progress.getStatus() == MessageSendStatus.Uploading) {
                 // BaseMessage type uploading
             }
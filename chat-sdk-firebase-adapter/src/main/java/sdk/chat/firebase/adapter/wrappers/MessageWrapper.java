@@ -70,6 +70,17 @@ public class MessageWrapper  {
             status.put(Keys.Status, link.getStatus());
             map.put(link.getUser().getEntityID(), status);
         }
+        if (ChatSDK.config().aggregateReadReceipts && !model.getThread().typeIs(ThreadType.Public)) {
+            // Members don't have local read receipts in this mode but other clients still
+            // expect an entry for each recipient
+            for (User user : model.getThread().getUsers()) {
+                if (!map.containsKey(user.getEntityID()) && ChatSDK.thread().hasVoice(model.getThread(), user)) {
+                    HashMap<String, Integer> status = new HashMap<>();
+                    status.put(Keys.Status, ReadStatus.None);
+                    map.put(user.getEntityID(), status);
+                }
+            }
+        }
         if (!map.isEmpty()) {
             values.put(FirebasePaths.ReadPath, map);
         }
@@ -113,23 +124,7 @@ public class MessageWrapper  {
             return;
         }
 
-        if (snapshot.hasChild(Keys.Meta)) {
-            model.setMetaValues(snapshot.child(Keys.Meta).getValue(Generic.mapStringObject()));
-        } else {
-            Logger.debug("");
-//            model.setText("");
-        }
-
-        if (snapshot.hasChild(Keys.Type)) {
-            model.setType(snapshot.child(Keys.Type).getValue(Long.class).intValue());
-        }
-
-        if (snapshot.hasChild(Keys.Date)) {
-            Long date = snapshot.child(Keys.Date).getValue(Long.class);
-            model.setDate(new Date(date));
-        } else {
-            Logger.debug("No Date");
-        }
+        deserializeValues(snapshot);
 
         if (snapshot.hasChild(Keys.From)) {
             String senderID = snapshot.child(Keys.From).getValue(String.class);
@@ -154,31 +149,156 @@ public class MessageWrapper  {
         model.update();
     }
 
-    public Single<Boolean> updateReadReceipts(Map<String, Map<String, Long>> map) {
-        return Single.defer((Callable<SingleSource<Boolean>>) () -> {
-
-            final List<Single<Boolean>> singles = new ArrayList<>();
+    /**
+     * Used when a page of messages is written in one transaction. The users must already
+     * have been fetched and the read receipts are written synchronously. The caller is
+     * responsible for saving the model.
+     * @param users map of entity ID to user for the sender and read receipt users
+     * @return true if the read receipts changed
+     */
+    public boolean deserialize(DataSnapshot snapshot, Map<String, User> users) {
 
-            for(String key : map.keySet()) {
+        if (snapshot.getValue() == null) {
+            return false;
+        }
 
-                User user = ChatSDK.db().fetchOrCreateEntityWithEntityID(User.class, key);
+        deserializeValues(snapshot);
 
-                Map<String, Long> statusMap = map.get(key);
+        if (snapshot.hasChild(Keys.From)) {
+            User user = users.get(snapshot.child(Keys.From).getValue(String.class));
+            if (user != null) {
+                model.setSender(user);
+            }
+        }
 
-                if (statusMap != null) {
+        boolean readReceiptsChanged = false;
 
-                    Long status = statusMap.get(Keys.Status);
-                    if (status == null) {
-                        status = (long) ReadStatus.None;
+        Map<String, Map<String, Long>> readMap = snapshot.child(Keys.Read).getValue(Generic.readReceiptHashMap());
+        if (readMap != null) {
+            if (aggregateRecipients(readMap)) {
+                readReceiptsChanged = true;
+            }
+            for (String key : readMap.keySet()) {
+                User user = users.get(key);
+                Map<String, Long> statusMap = readMap.get(key);
+                if (user != null && statusMap != null && !skipReadStatus(key, statusMap)) {
+                    if (model.setUserReadStatus(user, readStatus(statusMap), readDate(statusMap), false)) {
+                        readReceiptsChanged = true;
                     }
+                }
+            }
+        }
 
-                    Long date = statusMap.get(Keys.Date);
-                    if (date == null) {
-                        date = 0L;
-                    }
+        return readReceiptsChanged;
+    }
+
+    /**
+     * The entity IDs of the sender and the read receipt users so they can be fetched
+     * in bulk before {@link #deserialize(DataSnapshot, Map)} is called
+     */
+    public static List<String> userEntityIDs(DataSnapshot snapshot) {
+        List<String> ids = new ArrayList<>();
+        String senderID = senderEntityID(snapshot);
+        if (senderID != null) {
+            ids.add(senderID);
+        }
+        Map<String, Map<String, Long>> readMap = snapshot.child(Keys.Read).getValue(Generic.readReceiptHashMap());
+        if (readMap != null) {
+            for (Map.Entry<String, Map<String, Long>> entry : readMap.entrySet()) {
+                if (entry.getValue() != null && !skipReadStatus(entry.getKey(), entry.getValue())) {
+                    ids.add(entry.getKey());
+                }
+            }
+        }
+        return ids;
+    }
 
-                    singles.add(model.setUserReadStatusAsync(user, new ReadStatus(status.intValue()), new Date(date), false));
+    public static String senderEntityID(DataSnapshot snapshot) {
+        if (snapshot.hasChild(Keys.From)) {
+            return snapshot.child(Keys.From).getValue(String.class);
+        }
+        return null;
+    }
+
+    private void deserializeValues(DataSnapshot snapshot) {
+        if (snapshot.hasChild(Keys.Meta)) {
+            model.setMetaValues(snapshot.child(Keys.Meta).getValue(Generic.mapStringObject()));
+        } else {
+            Logger.debug("");
+//            model.setText("");
+        }
+
+        if (snapshot.hasChild(Keys.Type)) {
+            model.setType(snapshot.child(Keys.Type).getValue(Long.class).intValue());
+        }
+
+        if (snapshot.hasChild(Keys.Date)) {
+            Long date = snapshot.child(Keys.Date).getValue(Long.class);
+            model.setDate(new Date(date));
+        } else {
+            Logger.debug("No Date");
+        }
+    }
+
+    private static ReadStatus readStatus(Map<String, Long> statusMap) {
+        Long status = statusMap.get(Keys.Status);
+        if (status == null) {
+            status = (long) ReadStatus.None;
+        }
+        return new ReadStatus(status.intValue());
+    }
+
+    /**
+     * In aggregate mode other users who haven't received the message don't get a local read
+     * receipt, they're only counted as recipients. The current user's receipt is always
+     * kept because it's what the unread counts are based on
+     */
+    private static boolean skipReadStatus(String userEntityID, Map<String, Long> statusMap) {
+        return ChatSDK.config().aggregateReadReceipts
+                && readStatus(statusMap).getValue() == ReadStatus.None
+                && !userEntityID.equals(ChatSDK.currentUserID());
+    }
+
+    /**
+     * @return true if the message's recipient count changed
+     */
+    private boolean aggregateRecipients(Map<String, Map<String, Long>> readMap) {
+        if (!ChatSDK.config().aggregateReadReceipts) {
+            return false;
+        }
+        int recipients = 0;
+        for (Map<String, Long> statusMap : readMap.values()) {
+            if (statusMap != null && readStatus(statusMap).getValue() != ReadStatus.Hide) {
+                recipients++;
+            }
+        }
+        return model.updateRecipientCount(recipients);
+    }
+
+    private static Date readDate(Map<String, Long> statusMap) {
+        Long date = statusMap.get(Keys.Date);
+        if (date == null) {
+            date = 0L;
+        }
+        return new Date(date);
+    }
+
+    public Single<Boolean> updateReadReceipts(Map<String, Map<String, Long>> map) {
+        return Single.defer((Callable<SingleSource<Boolean>>) () -> {
+
+            final List<Single<Boolean>> singles = new ArrayList<>();
+
+            if (aggregateRecipients(map)) {
+                singles.add(Single.just(true));
+            }
+
+            for(String key : map.keySet()) {
+
+                Map<String, Long> statusMap = map.get(key);
 
+                if (statusMap != null && !skipReadStatus(key, statusMap)) {
+                    User user = ChatSDK.db().fetchOrCreateEntityWithEntityID(User.class, key);
+                    singles.add(model.setUserReadStatusAsync(user, readStatus(statusMap), readDate(statusMap), false));
                 }
             }
 
@@ -3,12 +3,9 @@ package sdk.chat.firebase.adapter.wrappers;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.ServerValue;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 
 import sdk.chat.core.dao.Keys;
-import sdk.chat.core.dao.Message;
 import sdk.chat.core.dao.Thread;
 import sdk.chat.core.dao.User;
 import sdk.chat.core.interfaces.ThreadType;
@@ -42,12 +39,7 @@ public class ThreadDeleter {
 
     public Completable deleteMessages() {
         return Completable.create(emitter -> {
-            List<Message> messages = new ArrayList<>(thread.getMessages());
-
-            for (Message m : messages) {
-                thread.removeMessage(m, false);
-                m.delete();
-            }
+            thread.removeAllMessages();
             thread.update();
             emitter.onComplete();
         }).subscribeOn(RX.io());
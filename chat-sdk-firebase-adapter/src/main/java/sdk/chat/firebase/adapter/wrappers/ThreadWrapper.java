@@ -22,8 +22,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import io.reactivex.Completable;
 import io.reactivex.Single;
@@ -35,6 +37,7 @@ import sdk.chat.core.dao.User;
 import sdk.chat.core.dao.sorter.MessageSorter;
 import sdk.chat.core.events.NetworkEvent;
 import sdk.chat.core.hook.HookEvent;
+import sdk.chat.core.interfaces.EntityUpdater;
 import sdk.chat.core.interfaces.ThreadType;
 import sdk.chat.core.session.ChatSDK;
 import sdk.chat.core.types.MessageSendStatus;
@@ -134,9 +137,9 @@ public class ThreadWrapper implements RXRealtime.DatabaseErrorListener {
 
             // We do it this way because otherwise when we exceed the number of messages,
             // This event is triggered as the messages go out of scope
-            int indexOfFirstDeletableMessage = model.indexOfFirstDeletableMessage();
-            if (indexOfFirstDeletableMessage >=0 ) {
-                startDate = model.getMessages().get(indexOfFirstDeletableMessage).getDate();
+            Message firstDeletableMessage = model.firstDeletableMessage();
+            if (firstDeletableMessage != null) {
+                startDate = firstDeletableMessage.getDate();
             }
 
             if (startDate != null) {
@@ -472,21 +475,15 @@ public class ThreadWrapper implements RXRealtime.DatabaseErrorListener {
 
                 if(hasValue) {
 
-                    Map<String, Object> hashData = snapshot.getValue(Generic.mapStringObject());
-
-                    MessageWrapper message;
-                    for (String key : hashData.keySet())
-                    {
-                        message = new MessageWrapper(snapshot.child(key));
-                        model.addMessage(message.getModel(), false);
-                        messages.add(message.getModel());
-                    }
+                    messages.addAll(upsertMessages(snapshot));
 
                     // Sort the messages
                     // We need to do this because the data comes as a hash map that's not sorted
                     Collections.sort(messages, new MessageSorter());
 
-                    ChatSDK.events().source().accept(NetworkEvent.messageAdded(messages.get(0)));
+                    if (!messages.isEmpty()) {
+                        ChatSDK.events().source().accept(NetworkEvent.messageAdded(messages.get(0)));
+                    }
 
                 }
 
@@ -495,6 +492,67 @@ public class ThreadWrapper implements RXRealtime.DatabaseErrorListener {
         }).subscribeOn(RX.io());
     }
 
+    /**
+     * Write a page of messages to the database in a single transaction. The messages and
+     * users are resolved with bulk queries rather than one query per message
+     */
+    protected List<Message> upsertMessages(DataSnapshot snapshot) {
+
+        final Set<String> userEntityIDs = new HashSet<>();
+        final Set<String> senderEntityIDs = new HashSet<>();
+
+        for (DataSnapshot child : snapshot.getChildren()) {
+            userEntityIDs.addAll(MessageWrapper.userEntityIDs(child));
+            String senderEntityID = MessageWrapper.senderEntityID(child);
+            if (senderEntityID != null) {
+                senderEntityIDs.add(senderEntityID);
+            }
+        }
+
+        final List<User> newSenders = new ArrayList<>();
+        final List<Message> readReceiptsUpdated = new ArrayList<>();
+
+        List<Message> messages = ChatSDK.db().callInTransaction(() -> {
+
+            Map<String, User> users = ChatSDK.db().fetchEntitiesWithEntityIDs(User.class, userEntityIDs);
+
+            List<String> missing = new ArrayList<>();
+            for (String entityID : userEntityIDs) {
+                if (!users.containsKey(entityID)) {
+                    missing.add(entityID);
+                }
+            }
+
+            Map<String, User> created = ChatSDK.db().createEntitiesWithEntityIDs(User.class, missing);
+            for (String entityID : created.keySet()) {
+                if (senderEntityIDs.contains(entityID)) {
+                    newSenders.add(created.get(entityID));
+                }
+            }
+            users.putAll(created);
+
+            Map<String, EntityUpdater<Message>> updates = new HashMap<>();
+            for (DataSnapshot child : snapshot.getChildren()) {
+                updates.put(child.getKey(), message -> {
+                    if (new MessageWrapper(message).deserialize(child, users)) {
+                        readReceiptsUpdated.add(message);
+                    }
+                });
+            }
+
+            return ChatSDK.db().upsertMessages(model, updates);
+        });
+
+        for (User user : newSenders) {
+            ChatSDK.core().userOn(user).subscribe(ChatSDK.events());
+        }
+        for (Message message : readReceiptsUpdated) {
+            ChatSDK.events().source().accept(NetworkEvent.messageReadReceiptUpdated(message));
+        }
+
+        return messages;
+    }
+
     /**
      * Converting the thread details to a map object.
      **/
@@ -0,0 +1,94 @@
+package sdk.guru.common;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed size thread pool that records how long tasks wait in the queue before they start
+ */
+public class MeteredExecutor extends ThreadPoolExecutor {
+
+    protected final AtomicLong executedCount = new AtomicLong();
+    protected final AtomicLong totalWaitNanos = new AtomicLong();
+    protected final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public MeteredExecutor(String name, int threads) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory(name, threads > 1));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        final long queuedAt = System.nanoTime();
+        super.execute(() -> {
+            recordWait(System.nanoTime() - queuedAt);
+            command.run();
+        });
+    }
+
+    protected void recordWait(long nanos) {
+        executedCount.incrementAndGet();
+        totalWaitNanos.addAndGet(nanos);
+        long max;
+        do {
+            max = maxWaitNanos.get();
+        } while (nanos > max && !maxWaitNanos.compareAndSet(max, nanos));
+    }
+
+    /**
+     * @return number of tasks waiting to start
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * @return number of tasks that have started since the counts were last reset
+     */
+    public long getExecutedCount() {
+        return executedCount.get();
+    }
+
+    public long getAverageWaitMillis() {
+        long count = executedCount.get();
+        return count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count) : 0;
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    public void resetCounts() {
+        executedCount.set(0);
+        totalWaitNanos.set(0);
+        maxWaitNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queued: %s, active: %s, executed: %s, average wait: %sms, max wait: %sms",
+                getQueueDepth(), getActiveCount(), getExecutedCount(), getAverageWaitMillis(), getMaxWaitMillis());
+    }
+
+    protected static class NamedThreadFactory implements ThreadFactory {
+
+        protected final String name;
+        protected final boolean numbered;
+        protected final AtomicInteger count = new AtomicInteger();
+
+        public NamedThreadFactory(String name, boolean numbered) {
+            this.name = name;
+            this.numbered = numbered;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, numbered ? name + "-" + count.incrementAndGet() : name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -12,6 +12,14 @@ public class RX {
 
     protected static ExecutorService firebaseExecutorService;
 
+    // Number of threads used for database reads. Only takes effect before the first read
+    public static int dbReaderCount = 3;
+
+    protected static MeteredExecutor dbWriteExecutor;
+    protected static MeteredExecutor dbReadExecutor;
+    protected static Scheduler dbWriteScheduler;
+    protected static Scheduler dbReadScheduler;
+
     public static Scheduler single() {
         return Schedulers.single();
     }
@@ -44,6 +52,48 @@ public class RX {
         return Schedulers.computation();
     }
 
+    /**
+     * Database writes. Runs on a single thread so writers never contend for the SQLite lock
+     * @return scheduler
+     */
+    public static synchronized Scheduler dbWrite() {
+        if (dbWriteScheduler == null) {
+            dbWriteScheduler = Schedulers.from(dbWriteExecutor());
+        }
+        return dbWriteScheduler;
+    }
+
+    /**
+     * Database reads. With write-ahead logging these can run alongside the writer
+     * @return scheduler
+     */
+    public static synchronized Scheduler dbRead() {
+        if (dbReadScheduler == null) {
+            dbReadScheduler = Schedulers.from(dbReadExecutor());
+        }
+        return dbReadScheduler;
+    }
+
+    /**
+     * The executor behind {@link #dbWrite()}, exposes queue depth and wait times
+     */
+    public static synchronized MeteredExecutor dbWriteExecutor() {
+        if (dbWriteExecutor == null) {
+            dbWriteExecutor = new MeteredExecutor("db-write", 1);
+        }
+        return dbWriteExecutor;
+    }
+
+    /**
+     * The executor behind {@link #dbRead()}, exposes queue depth and wait times
+     */
+    public static synchronized MeteredExecutor dbReadExecutor() {
+        if (dbReadExecutor == null) {
+            dbReadExecutor = new MeteredExecutor("db-read", Math.max(1, dbReaderCount));
+        }
+        return dbReadExecutor;
+    }
+
     /**
      * For longer listeners
      * @return scheduler